@@ -1,10 +1,26 @@
 package app;
 //essa é a classe terminal
-import java.util.ArrayList;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import avlTree.AVLTree;
 import btree.BTree;
+import common.TraversalOrder;
+import common.TreeCounters;
+import common.TreeOperationEvent;
 import redBlackTree.RedBlackTree;
 
 public class App<T> {
@@ -12,6 +28,14 @@ public class App<T> {
 	private AVLTree<String> avlTree; //árvore avl
 	private BTree<String> bTree; //árvore B
 	private Scanner sc;
+	private CommandTokenizer tokenizer;//leitor do modo batch
+	private String[] originalCommand = new String[4];//palavras do último comando do modo interativo, sem o toUpperCase
+	private PrintStream out = System.out;//saída dos comandos
+	private PrintStream err = System.err;//mensagens de erro
+	private boolean quiet = false;//no modo batch silencioso nada é impresso, só o resumo no final
+	private long errors = 0;//comandos que terminaram com mensagem de erro
+	private final CommandStats stats = new CommandStats();//latência e vazão de cada tipo de comando
+	private ScheduledExecutorService statsReporter;//thread do relatório periódico das estatísticas, se ligado
 	//inicialização das árvores e controle dos próximos comandos
 	public void run(){
 		sc = new Scanner(System.in);
@@ -19,12 +43,67 @@ public class App<T> {
 		setAvlTree(new AVLTree<String>());
 		setBTree(new BTree<String>());
 		while(sc.hasNextLine()){
-			try{
-				InterpretCommand(getNextCommand());
-			}catch(Exception e){
-				System.err.println("Please type a valid command! Type HELP to see the available commands");
-			}
+			execute(getNextCommand());
+		}
+	}
+	//modo batch: lê os comandos de um arquivo ou da entrada padrão, sem prompt, com o CommandTokenizer.
+	//A saída vai para um buffer grande e só é escrita quando ele enche (ou é descartada, se quiet) e no
+	//final um resumo com o número de comandos e a vazão é impresso na saída de erro.
+	//Linhas vazias são ignoradas em vez de contarem como comando inválido
+	public void runBatch(InputStream in, boolean quiet) throws IOException{
+		setRbTree(new RedBlackTree<String>());
+		setAvlTree(new AVLTree<String>());
+		setBTree(new BTree<String>());
+		this.quiet = quiet;
+		this.out = quiet ? new PrintStream(OutputStream.nullOutputStream())
+				: new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		this.err = quiet ? out : System.err;
+		tokenizer = new CommandTokenizer(in);
+		String[] command = new String[4];
+		long commands = 0;
+		long start = System.nanoTime();
+		while(tokenizer.next(command)){
+			if(command[0] == null) continue;
+			execute(command);
+			commands++;
+		}
+		out.flush();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d comandos (%d linhas, %.1f MB) em %.3f s: %.0f comandos/s, %d erros%n", commands,
+				tokenizer.lines(), tokenizer.bytes() / 1e6, seconds, commands / seconds, errors);
+	}
+	//executa um comando medindo a latência dele, que inclui a impressão da resposta
+	private void execute(String[] command){
+		long start = System.nanoTime();
+		try{
+			InterpretCommand(command);
+		}catch(Exception e){
+			error("Please type a valid command! Type HELP to see the available commands");
 		}
+		stats.record(command, System.nanoTime() - start);
+	}
+	//liga o relatório periódico das estatísticas na saída de erro a cada tantos segundos; 0 desliga.
+	//Ele roda numa thread daemon, então sai mesmo com o terminal parado ou no meio de um comando demorado
+	public void setStatsInterval(long seconds){
+		if(statsReporter != null){
+			statsReporter.shutdownNow();
+			statsReporter = null;
+		}
+		if(seconds <= 0) return;
+		statsReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "stats");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		statsReporter.scheduleAtFixedRate(new Runnable(){
+			@Override
+			public void run(){
+				stats.print(System.err);
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
 	}
 	//getters and setters
 	public RedBlackTree<String> getRbTree() {
@@ -72,35 +151,165 @@ public class App<T> {
 		case "HELP":
 			help();
 			break;
+		case "STATS":
+			StatsOperation(command);
+			break;
+		case "COUNTERS":
+			CountersOperation(command);
+			break;
+		case "SAVE":
+			SaveOperation(command);
+			break;
+		case "LOAD":
+			LoadOperation(command);
+			break;
 		default:
 			UnexpectedToken();
 		}
 	}
+	//imprime a latência (p50/p99/p999/max) e a vazão de cada tipo de comando já executado, ou zera tudo com STATS RESET
+	private void StatsOperation(String[] command){
+		if(command[1] == null){
+			stats.print(out);
+		}else if(command[1].equals("RESET")){
+			stats.reset();
+			echo("stats reset", null);
+		}else{
+			UnexpectedToken();
+		}
+	}
+	//imprime a altura, o número de nós e os contadores de trabalho de uma árvore, ou zera os contadores com COUNTERS <Tree> RESET.
+	//Os contadores só andam com a JVM iniciada com -Dtrees.counters=true
+	private void CountersOperation(String[] command) throws Exception{
+		TreeCounters counters;
+		int height;
+		int nodes;
+		switch(command[1]){
+		case "AVL":
+			counters = getAvlTree().counters();
+			height = getAvlTree().height();
+			nodes = getAvlTree().size();
+			break;
+		case "RB":
+			counters = getRbTree().counters();
+			height = getRbTree().height();
+			nodes = getRbTree().nodeCount();
+			break;
+		case "BT":
+			counters = getBTree().counters();
+			height = getBTree().height();
+			nodes = getBTree().nodeCount();
+			break;
+		default:
+			UnexpectedToken();
+			return;
+		}
+		if(command[2] != null && command[2].equals("RESET")){
+			counters.reset();
+			echo("counters reset", null);
+			return;
+		}
+		out.println("altura " + height + ", " + nodes + " nós, " + counters);
+	}
+	//grava as chaves da árvore, em ordem, em um snapshot binário: SAVE <Tree> <file>
+	private void SaveOperation(String[] command) throws Exception{
+		if(command[2] == null){
+			error("Please type a valid command! Type HELP to see the available commands");
+			return;
+		}
+		Path file = Paths.get(originalToken(2));
+		try{
+			switch(command[1]){
+			case "AVL":
+				TreeSnapshot.save(file, TreeSnapshot.AVL, 0, getAvlTree().size(), getAvlTree().iterator(TraversalOrder.IN));
+				break;
+			case "RB":
+				TreeSnapshot.save(file, TreeSnapshot.RB, 0, getRbTree().size(), getRbTree().iterator(TraversalOrder.IN));
+				break;
+			case "BT":
+				TreeSnapshot.save(file, TreeSnapshot.BT, getBTree().order(), getBTree().size(), getBTree().iterator(TraversalOrder.IN));
+				break;
+			default:
+				UnexpectedToken();
+				return;
+			}
+		}catch(IOException e){
+			error("Não foi possível gravar o snapshot: " + e.getMessage());
+			return;
+		}
+		echo("save ", file.toString());
+	}
+	//substitui a árvore pelas chaves de um snapshot: LOAD <Tree> <file>. As chaves já estão em ordem, então a árvore
+	//é montada com bulkLoad em tempo linear. Um snapshot de qualquer árvore pode ser carregado em qualquer outra; a
+	//árvore B usa a ordem gravada no snapshot, ou a 2-3 padrão se ele não veio de uma árvore B
+	private void LoadOperation(String[] command) throws Exception{
+		if(command[2] == null){
+			error("Please type a valid command! Type HELP to see the available commands");
+			return;
+		}
+		Path file = Paths.get(originalToken(2));
+		if(!command[1].equals("AVL") && !command[1].equals("RB") && !command[1].equals("BT")){
+			UnexpectedToken();
+			return;
+		}
+		try{
+			TreeSnapshot snapshot = TreeSnapshot.open(file);
+			switch(command[1]){
+			case "AVL":
+				setAvlTree(AVLTree.bulkLoad(snapshot.keys(), snapshot.size()));
+				break;
+			case "RB":
+				setRbTree(RedBlackTree.bulkLoad(snapshot.keys(), snapshot.size()));
+				break;
+			case "BT":
+				setBTree(BTree.bulkLoad(snapshot.keys(), snapshot.order() > 0 ? snapshot.order() : 1, 1.0));
+				break;
+			}
+		}catch(IOException e){
+			error("Não foi possível ler o snapshot: " + e.getMessage());
+			return;
+		}catch(IllegalStateException | IllegalArgumentException e){
+			error("Snapshot inválido: " + e.getMessage());
+			return;
+		}
+		echo("load ", file.toString());
+	}
+	//palavra index do comando atual como foi digitada, sem o toUpperCase, para nomes de arquivo
+	private String originalToken(int index){
+		if(tokenizer != null) return tokenizer.original(index);
+		return originalCommand[index];
+	}
 	//caso seja print, verifica qual árvore e qual tipo de ordem se deseja imprimir
+	//as chaves são impressas direto dos iteradores das árvores, sem montar uma lista com a árvore inteira
 	private void PrintOperation(String[] command) throws Exception{
+		TraversalOrder order = TraversalOrder.parse(command[1]);
 		switch(command[2]){
 		case "AVL"/*"VL"*/:
-			printArrayList(getAvlTree().toArrayList(command[1]));
+			printKeys(getAvlTree().size() == 0 ? null : getAvlTree().traverse(order));
 			break;
 		case "BT":
-			printArrayList(getBTree().toArrayList(command[1]));
+			if(getBTree().size() > 0 && order != TraversalOrder.IN){
+				error("You can only print B trees in order!");
+				break;
+			}
+			printKeys(getBTree().size() == 0 ? null : getBTree().traverse(order));
 			break;
 		case "RB":	
-			printArrayList(getRbTree().toArrayList(command[1]));
+			printKeys(getRbTree().size() == 0 ? null : getRbTree().traverse(order));
 			break;
 
 		default:
 			UnexpectedToken();
 		}
 	}
-	//printa o conteúdo de um arraylist
-	private void printArrayList(ArrayList<String> arrayList) {
-		if(arrayList == null){
-			System.err.println("Árvore Vazia");
+	//printa as chaves de um percurso
+	private void printKeys(Iterable<String> keys) {
+		if(keys == null){
+			error("Árvore Vazia");
 			return;
 		}
-		for(String key : arrayList){
-			System.out.println(key);
+		for(String key : keys){
+			out.println(key);
 		}
 
 	}
@@ -112,54 +321,52 @@ public class App<T> {
 				"        PS: Can only be made from AVL or RB to the others\n"+
 				"Creation:  <Tree> NEW\n"+
 				"        PS: If the tree is a BTree: <Tree> NEW <number>\n"+
-				"Print:     PRINT <Type> <Tree>\n\n"+
+				"Print:     PRINT <Type> <Tree>\n"+
+				"Stats:     STATS\n"+
+				"        PS: STATS RESET clears the latency histograms\n"+
+				"Counters:  COUNTERS <Tree>\n"+
+				"        PS: Here <Tree> is AVL, RB or BT. COUNTERS <Tree> RESET clears them\n"+
+				"Snapshot:  SAVE <Tree> <file> / LOAD <Tree> <file>\n"+
+				"        PS: Here <Tree> is AVL, RB or BT. Any snapshot can be loaded into any tree\n\n"+
 				"<Tree>: VL(for AVL); BT(for BTree); RB(for RedBlackTree)\n"+
 				"<data>: an alphanumeric data\n"+
 				"<Type>: IN(for InOrder); PRE(for PreOrder); POS(for PostOrder)\n"+
 				"<number>: a natural number greater than 0\n\n";
 
-		System.out.print(msg);
+		out.print(msg);
 	}
 	//quando um comando inexistente for chamado, o usuário é alertado
 	private void UnexpectedToken() {
-		System.err.println("Comando Inválido - Digite HELP para ver os comandos disponíveis");
+		error("Comando Inválido - Digite HELP para ver os comandos disponíveis");
 
 	}
 	//verifica qual árvore será copiada e em seguida para qual árvore será copiada. Chama o método que retorna um array de acordo com o tipo de ordem desejada e realiza a cópia para a outra árvore.
+	//Em ordem (IN) as chaves já vêm ordenadas, então a árvore de destino é montada direto com bulkLoad, sem rebalanceamentos.
+	//Cada cópia lenta vira um TreeOperationEvent "copy" da árvore de destino na gravação do JFR
 	private void CopyOperation(String[] command) throws Exception{
+		TraversalOrder order = TraversalOrder.parse(command[1]);
+		boolean sorted = order == TraversalOrder.IN;
 		switch(command[2]){
 		case "AVL":
 			if(command[3].equals("RB")){
-				setRbTree(new RedBlackTree<String>());
-				for (String string : getAvlTree().toArrayList(command[1])) {
-					getRbTree().insert(string);
-				}
-				System.out.println("cp avl -> rb");
+				copyToRb(getAvlTree().iterator(order), getAvlTree().size(), sorted);
+				echo("cp avl -> rb", null);
 			}else if(command[3].equals("BT")){
-				setBTree(new BTree<String>());
-				for (String string : getAvlTree().toArrayList(command[1])) {
-					getBTree().insert(string);
-				}
-				System.out.println("cp avl -> bt");
+				copyToBt(getAvlTree().iterator(order), getAvlTree().size(), sorted);
+				echo("cp avl -> bt", null);
 			}else{
-				System.err.println("Select a valid type of tree to paste!");
+				error("Select a valid type of tree to paste!");
 			}
 			break;
 		case "RB":
 			if(command[3].equals("AVL")){
-				setAvlTree(new AVLTree<String>());
-				for (String string : getRbTree().toArrayList(command[1])) {
-					getAvlTree().insert(string);
-				}
-				System.out.println("cp rb -> avl");
+				copyToAvl(getRbTree().iterator(order), getRbTree().size(), sorted);
+				echo("cp rb -> avl", null);
 			}else if(command[3].equals("BT")){
-				setBTree(new BTree<String>());
-				for (String string : getRbTree().toArrayList(command[1])) {
-					getBTree().insert(string);
-				}
-				System.out.println("cp rb -> bt");
+				copyToBt(getRbTree().iterator(order), getRbTree().size(), sorted);
+				echo("cp rb -> bt", null);
 			}else{
-				System.err.println("Select a valid type of tree to paste!");
+				error("Select a valid type of tree to paste!");
 			}
 			
 			break;
@@ -168,25 +375,63 @@ public class App<T> {
 		}
 
 	}
+	//substitui a árvore AVL por uma com as chaves dadas
+	private void copyToAvl(Iterator<String> keys, int size, boolean sorted){
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if(sorted){
+			setAvlTree(AVLTree.bulkLoad(keys, size));
+		}else{
+			setAvlTree(new AVLTree<String>());
+			while (keys.hasNext()) {
+				getAvlTree().insert(keys.next());
+			}
+		}
+		event.finish("AVL", "copy", null, getAvlTree().height(), getAvlTree().restructurings(), getAvlTree().size());
+	}
+	//substitui a árvore rubro negra por uma com as chaves dadas
+	private void copyToRb(Iterator<String> keys, int size, boolean sorted){
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if(sorted){
+			setRbTree(RedBlackTree.bulkLoad(keys, size));
+		}else{
+			setRbTree(new RedBlackTree<String>());
+			while (keys.hasNext()) {
+				getRbTree().insert(keys.next());
+			}
+		}
+		//a altura da rubro-negra custa um percurso, então só é calculada com uma gravação do JFR rodando
+		event.finish("RB", "copy", null, event.isEnabled() ? getRbTree().height() : 0, getRbTree().restructurings(), getRbTree().size());
+	}
+	//substitui a árvore B por uma com as chaves dadas
+	private void copyToBt(Iterator<String> keys, int size, boolean sorted){
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if(sorted){
+			setBTree(BTree.bulkLoad(keys));
+		}else{
+			setBTree(new BTree<String>());
+			while (keys.hasNext()) {
+				getBTree().insert(keys.next());
+			}
+		}
+		event.finish("BT", "copy", null, getBTree().height(), getBTree().restructurings(), getBTree().size());
+	}
 	//verifica qual operação será realizada na árvore rubro negra
 	private void RBOperation(String[] command) throws Exception{
 		switch(command[1]){
 		case "NEW":
-			System.out.println("new tree ");
+			echo("new tree ", null);
 			setRbTree(new RedBlackTree<String>());
 			break;
 		case "I":
 			getRbTree().insert(command[2]);
-			System.out.println("insertion "+command[2]);
+			echo("insertion ", command[2]);
 			break;
 		case "R":
-			try{
-				getRbTree().remove(getRbTree().search(command[2]));
-			}catch(NullPointerException e){
-				System.err.println("Valor não encontrado");
+			if(!getRbTree().remove(command[2])){
+				error("Valor não encontrado");
 			}
 
-			System.out.println("deletion "+command[2]);
+			echo("deletion ", command[2]);
 			break;
 		default:
 			UnexpectedToken();
@@ -198,23 +443,23 @@ public class App<T> {
 		case "NEW":
 			if(command[2] != null){
 				setBTree(new BTree<String>(Integer.parseInt(command[2])));
-				System.out.println("new tree");
+				echo("new tree", null);
 			}else{
-				System.err.println("Please type a valid command! Type HELP to see the available commands");
+				error("Please type a valid command! Type HELP to see the available commands");
 			}
 			break;
 		case "I":
-			System.out.println("insertion "+command[2]);
+			echo("insertion ", command[2]);
 			getBTree().insert(command[2]);
 			break;
 		case "R":
 			try{
 				getBTree().remove(command[2]).length();
 			}catch(NullPointerException e){
-				System.err.println("Valor não encontrado");
+				error("Valor não encontrado");
 			}
 
-			System.out.println("deletion "+command[2]);
+			echo("deletion ", command[2]);
 			break;
 		default:
 			UnexpectedToken();
@@ -224,32 +469,50 @@ public class App<T> {
 	private void AVLOperation(String[] command) throws Exception{
 		switch(command[1]){
 		case "NEW":
-			System.out.println("new tree");
+			echo("new tree", null);
 			this.setAvlTree(new AVLTree<String>());
 			break;
 		case "I":
-			System.out.println("insertion "+command[2]);
+			echo("insertion ", command[2]);
 			this.getAvlTree().insert(command[2]);
 			break;
 		case "R":
 			try{
-				System.out.println("deletion "+command[2]);
+				echo("deletion ", command[2]);
 				this.getAvlTree().remove(command[2]);
 			}catch(NullPointerException e){
-				System.err.println("Valor não encontrado");
+				error("Valor não encontrado");
 			}
 			break;
 		default:
 			UnexpectedToken();
 		}		
 	}
-	//essa função quebra o comando em no máximo 4 partes, onde cada uma conterá uma palavra
+	//imprime a mensagem de um comando, seguida do dado se houver; no modo silencioso nem monta a linha
+	private void echo(String msg, String data){
+		if(quiet) return;
+		if(data == null){
+			out.println(msg);
+		}else{
+			out.print(msg);
+			out.println(data);
+		}
+	}
+	//imprime uma mensagem de erro e conta o erro para o resumo do modo batch
+	private void error(String msg){
+		errors++;
+		err.println(msg);
+	}
+	//essa função quebra o comando em no máximo 4 partes, onde cada uma conterá uma palavra.
+	//As palavras são separadas por espaços, tabs ou \r, como no CommandTokenizer do modo batch
 	private String[] getNextCommand(){
 		int index = 0;
-		String[] msg = sc.nextLine().split(" ");
+		String[] msg = sc.nextLine().split("[ \t\r]");
 		String[] cmd = new String[4];
+		originalCommand = new String[4];
 		for(int i = 0; i<msg.length; i++){
 			if(!msg[i].equals("") && index<cmd.length){
+				originalCommand[index] = msg[i];
 				cmd[index++] = msg[i].toUpperCase();
 			}
 		}
@@ -0,0 +1,127 @@
+package app;
+
+import java.io.PrintStream;
+
+import common.LatencyHistogram;
+
+//latencia e vazao de cada tipo de comando do App, separados por arvore: um LatencyHistogram por tipo, com
+//o numero de comandos desde o inicio (ou o ultimo STATS RESET) e desde o ultimo relatorio. Os tipos sao
+//fixos, entao um comando invalido cai em OUTROS em vez de criar uma entrada nova. O relatorio periodico roda
+//em outra thread, entao record, reset e a copia feita pelo print sao sincronizados
+final class CommandStats {
+	private static final String[] NAMES = { "VL I", "VL R", "VL NEW", "RB I", "RB R", "RB NEW", "BT I", "BT R",
+			"BT NEW", "PRINT AVL", "PRINT RB", "PRINT BT", "COPY AVL", "COPY RB", "HELP", "STATS", "COUNTERS", "SAVE", "LOAD", "OUTROS" };
+	private static final int OTHER = NAMES.length - 1;
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+	private final long[] reportedCounts = new long[NAMES.length];//contagem no ultimo relatorio
+	private long start = System.nanoTime();
+	private long lastReport = start;
+
+	CommandStats() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	//tipo do comando pelas duas primeiras palavras que importam: a arvore e a operacao, ou o comando e a arvore
+	private static int indexOf(String[] command) {
+		String first = command[0];
+		if (first == null) return OTHER;
+		String second = first.equals("PRINT") || first.equals("COPY") ? command[2] : command[1];
+		int base;
+		switch (first) {
+		case "VL":
+			base = 0;
+			break;
+		case "RB":
+			base = 3;
+			break;
+		case "BT":
+			base = 6;
+			break;
+		case "PRINT":
+			if (second == null) return OTHER;
+			switch (second) {
+			case "AVL":
+				return 9;
+			case "RB":
+				return 10;
+			case "BT":
+				return 11;
+			default:
+				return OTHER;
+			}
+		case "COPY":
+			if (second == null) return OTHER;
+			return second.equals("AVL") ? 12 : second.equals("RB") ? 13 : OTHER;
+		case "HELP":
+			return 14;
+		case "STATS":
+			return 15;
+		case "COUNTERS":
+			return 16;
+		case "SAVE":
+			return 17;
+		case "LOAD":
+			return 18;
+		default:
+			return OTHER;
+		}
+		if (second == null) return OTHER;
+		switch (second) {
+		case "I":
+			return base;
+		case "R":
+			return base + 1;
+		case "NEW":
+			return base + 2;
+		default:
+			return OTHER;
+		}
+	}
+
+	synchronized void record(String[] command, long nanos) {
+		histograms[indexOf(command)].record(nanos);
+	}
+
+	//zera os histogramas e os contadores de vazao
+	synchronized void reset() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i].reset();
+			reportedCounts[i] = 0;
+		}
+		start = System.nanoTime();
+		lastReport = start;
+	}
+
+	//imprime uma linha por tipo de comando ja executado: total, comandos/s desde o inicio e desde o ultimo
+	//relatorio, e os percentis em microssegundos. Os histogramas sao copiados com o lock e impressos sem ele
+	void print(PrintStream out) {
+		LatencyHistogram[] snapshot = new LatencyHistogram[NAMES.length];
+		long[] reported;//contagens do relatorio anterior
+		double elapsed;
+		double interval;
+		synchronized (this) {
+			long now = System.nanoTime();
+			elapsed = Math.max(1, now - start) / 1e9;
+			interval = Math.max(1, now - lastReport) / 1e9;
+			reported = reportedCounts.clone();
+			for (int i = 0; i < histograms.length; i++) {
+				snapshot[i] = new LatencyHistogram(histograms[i]);
+				reportedCounts[i] = snapshot[i].getCount();
+			}
+			lastReport = now;
+		}
+		out.printf("%-10s %10s %10s %10s %9s %9s %9s %9s%n", "comando", "total", "cmd/s", "cmd/s int", "p50 us",
+				"p99 us", "p999 us", "max us");
+		for (int i = 0; i < snapshot.length; i++) {
+			LatencyHistogram histogram = snapshot[i];
+			long count = histogram.getCount();
+			if (count == 0) continue;
+			out.printf("%-10s %10d %10.0f %10.0f %9.1f %9.1f %9.1f %9.1f%n", NAMES[i], count, count / elapsed,
+					(count - reported[i]) / interval, histogram.percentile(0.5) / 1e3,
+					histogram.percentile(0.99) / 1e3, histogram.percentile(0.999) / 1e3, histogram.getMax() / 1e3);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//le os comandos do modo batch direto de um InputStream com um buffer grande e quebra cada linha em ate 4
+//tokens em maiusculas, como o getNextCommand do App, mas sem split, sem toUpperCase e sem String por linha:
+//as palavras dos comandos viram as constantes abaixo e so o dado (que vai para a arvore) vira uma String nova.
+//Os tokens sao separados por espacos ou tabs e um \r no fim da linha e ignorado, para aceitar scripts do Windows.
+//Os bytes originais dos tokens da linha tambem sao guardados, para original() devolver, por exemplo, um nome
+//de arquivo sem o toUpperCase
+final class CommandTokenizer {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String[] KEYWORDS = { "VL", "BT", "RB", "I", "R", "NEW", "PRINT", "COPY", "HELP", "IN",
+			"PRE", "POS", "AVL", "STATS", "RESET", "COUNTERS", "SAVE",
+			"LOAD" };
+	private static final byte[][] KEYWORD_BYTES = new byte[KEYWORDS.length][];
+	static {
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			KEYWORD_BYTES[i] = KEYWORDS[i].getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	private byte[] token = new byte[64];//token atual, ja em maiusculas se for ASCII
+	private byte[] raw = new byte[64];//bytes originais dos tokens da linha atual, um depois do outro
+	private int rawLength = 0;
+	private int[] rawStarts = new int[4];//inicio e fim em raw de cada token devolvido
+	private int[] rawEnds = new int[4];
+	private long lines = 0;
+	private long bytes = 0;
+
+	CommandTokenizer(InputStream in) {
+		this.in = in;
+	}
+
+	//le a proxima linha e preenche command com ate 4 tokens, deixando null nas posicoes que sobrarem.
+	//Retorna false no fim da entrada
+	boolean next(String[] command) throws IOException {
+		if (position == limit && !fill())
+			return false;
+		lines++;
+		if (rawStarts.length < command.length) {
+			rawStarts = new int[command.length];
+			rawEnds = new int[command.length];
+		}
+		rawLength = 0;
+		int count = 0;
+		int length = 0;
+		boolean ascii = true;
+		while (true) {
+			if (position == limit && !fill()) {
+				break;
+			}
+			byte b = buffer[position++];
+			if (b == '\n') break;
+			if (b == ' ' || b == '\t' || b == '\r') {
+				if (length > 0) {
+					if (count < command.length) {
+						rawStarts[count] = rawLength - length;
+						rawEnds[count] = rawLength;
+						command[count++] = toToken(length, ascii);
+					}
+					length = 0;
+					ascii = true;
+				}
+				continue;
+			}
+			if (length == token.length) token = Arrays.copyOf(token, length * 2);
+			if (rawLength == raw.length) raw = Arrays.copyOf(raw, rawLength * 2);
+			raw[rawLength++] = b;
+			if (b >= 'a' && b <= 'z') b -= 'a' - 'A';
+			else if (b < 0) ascii = false;
+			token[length++] = b;
+		}
+		if (length > 0 && count < command.length) {
+			rawStarts[count] = rawLength - length;
+			rawEnds[count] = rawLength;
+			command[count++] = toToken(length, ascii);
+		}
+		for (int i = count; i < command.length; i++) {
+			command[i] = null;
+		}
+		return true;
+	}
+
+	//palavras conhecidas voltam como constantes; o resto vira String. Fora do ASCII o token e decodificado
+	//como UTF-8 e passa pelo toUpperCase, como no modo interativo
+	private String toToken(int length, boolean ascii) {
+		if (!ascii)
+			return new String(token, 0, length, StandardCharsets.UTF_8).toUpperCase();
+		for (int i = 0; i < KEYWORD_BYTES.length; i++) {
+			if (equals(KEYWORD_BYTES[i], length))
+				return KEYWORDS[i];
+		}
+		return new String(token, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+	private boolean equals(byte[] keyword, int length) {
+		if (keyword.length != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (keyword[i] != token[i]) return false;
+		}
+		return true;
+	}
+
+	private boolean fill() throws IOException {
+		int read = in.read(buffer, 0, buffer.length);
+		if (read <= 0)
+			return false;
+		position = 0;
+		limit = read;
+		bytes += read;
+		return true;
+	}
+
+	//token index da ultima linha como foi digitado, sem passar para maiusculas; so valido se next preencheu essa posicao
+	String original(int index) {
+		return new String(raw, rawStarts[index], rawEnds[index] - rawStarts[index], StandardCharsets.UTF_8);
+	}
+
+	long lines() {//linhas lidas ate agora
+		return lines;
+	}
+
+	long bytes() {//bytes lidos ate agora
+		return bytes;
+	}
+}
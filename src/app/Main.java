@@ -1,10 +1,33 @@
 package app;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 //essa classe instanciar o terminal.
+//uso: java app.Main                          modo interativo
+//     java app.Main --batch [arquivo] [--quiet]  executa os comandos do arquivo (ou da entrada padro)
+//     --stats <segundos> em qualquer modo imprime as estatsticas dos comandos periodicamente na sada de erro
 public class Main {
 	private static App terminal;
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		terminal = new App();
-		terminal.run();
+		boolean batch = false;
+		String file = null;
+		boolean quiet = false;
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("--batch")) batch = true;
+			else if(args[i].equals("--quiet")) quiet = true;
+			else if(args[i].equals("--stats")) terminal.setStatsInterval(Long.parseLong(args[++i]));
+			else file = args[i];
+		}
+		if(!batch){
+			terminal.run();
+			return;
+		}
+		try(InputStream in = file == null ? System.in : new FileInputStream(file)){
+			terminal.runBatch(in, quiet);
+		}
 	}
 }
@@ -1,10 +1,51 @@
 package app;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 import avlTree.AVLTree;
+import avlTree.PersistentAVLTree;
+import btree.BPlusTree;
+import btree.BTree;
+import btree.ConcurrentBTree;
+import btree.KeyCodec;
+import btree.LongBTree;
+import btree.PagedBTree;
+import btree.VersionedBTree;
+import common.TraversalOrder;
+import common.TreeCounters;
+import redBlackTree.ArrayRedBlackTree;
+import redBlackTree.ConcurrentRedBlackTree;
+import redBlackTree.RedBlackTree;
 //essa classe serve apenas para testes
 public class Teste {
 	private static AVLTree<Integer> avlTree;
 	public static void main(String[] args) {
+		testeAlturasAVL();
+		testeEstatisticasRB();
+		testeRemocaoRB(false);
+		testeRemocaoRB(true);
+		testeRubroNegraVetores();
+		testeRubroNegraConcorrente();
+		testeAVLPersistente();
+		testeArvoreB(false);
+		testeArvoreB(true);
+		testeArvoreBLong();
+		testeArvoreBPaginada();
+		testeArvoreBMais();
+		testeArvoreBConcorrente(1);
+		testeArvoreBConcorrente(3);
+		testeArvoreBVersionada(1);
+		testeArvoreBVersionada(4);
+		testeContadores();
 		App app = new App();
 		avlTree = new AVLTree<Integer>();		
 		avlTree.insert(new Integer(6));
@@ -27,5 +68,671 @@ public class Teste {
 			System.out.println(t);
 		}
 	}
+	//confere a altura e o número de nós informados pelas árvores e, com -Dtrees.counters=true, se os
+	//contadores andam; desligados eles devem ficar em zero
+	private static void testeContadores() {
+		Random random = new Random(42);
+		AVLTree<Integer> avl = new AVLTree<Integer>();
+		RedBlackTree<Integer> rb = new RedBlackTree<Integer>(true);
+		BTree<Integer> bt = new BTree<Integer>(2);
+		for (int i = 0; i < 20000; i++) {
+			Integer key = random.nextInt(5000);
+			avl.insert(key);
+			rb.insert(key);
+			bt.insert(key);
+		}
+		if (rb.nodeCount() != rb.toArrayList("IN").stream().distinct().count() || rb.height() < 13
+				|| rb.height() > 2 * 13 || bt.nodeCount() < 20000 / 5 || bt.height() < 1) {
+			throw new IllegalStateException("contadores: altura ou número de nós errado");
+		}
+		TreeCounters[] counters = { avl.counters(), rb.counters(), bt.counters() };
+		for (TreeCounters c : counters) {
+			boolean counted = c.getOperations() == 20000 && c.getComparisons() > 20000;
+			if (counted != TreeCounters.ENABLED) {
+				throw new IllegalStateException("contadores: " + c);
+			}
+		}
+		if (TreeCounters.ENABLED && (avl.counters().getRotations() == 0 || rb.counters().getFixups() == 0
+				|| bt.counters().getSplits() == 0)) {
+			throw new IllegalStateException("contadores: rotações, fixups ou splits não contados");
+		}
+		System.out.println("contadores ok: AVL altura " + avl.height() + ", RB altura " + rb.height() + " com "
+				+ rb.nodeCount() + " nós, B altura " + bt.height() + " com " + bt.nodeCount() + " nós; " + bt.counters());
+	}
+	//insere e remove chaves aleatórias e confere a altura e o tamanho guardados nos nós com os valores recalculados
+	private static void testeAlturasAVL() {
+		Random random = new Random(42);
+		AVLTree<Integer> tree = new AVLTree<Integer>(64);//com pool, para os nós reaproveitados também serem conferidos
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < 200000; i++) {
+			if (keys.isEmpty() || random.nextInt(3) > 0) {
+				Integer key = random.nextInt(100000);
+				tree.insert(key);
+				keys.add(key);
+			} else {
+				tree.remove(keys.remove(random.nextInt(keys.size())));
+			}
+			if (i % 10000 == 0 && !tree.validate()) {
+				throw new IllegalStateException("AVL inválida na operação " + i);
+			}
+		}
+		if (!tree.validate() || tree.size() != keys.size()) {
+			throw new IllegalStateException("AVL inválida ao final");
+		}
+		System.out.println("AVL ok: " + tree.size() + " nós, altura " + tree.height() + ", " + tree.poolStats());
+	}
+	//confere select, rank e countInRange da rubro-negra com a lista em ordem
+	private static void testeEstatisticasRB() {
+		Random random = new Random(42);
+		RedBlackTree<Integer> tree = new RedBlackTree<Integer>();
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < 20000; i++) {
+			keys.add(i);
+		}
+		Collections.shuffle(keys, random);
+		for (Integer key : keys) {
+			tree.insert(key);
+		}
+		for (int i = 0; i < 5000; i++) {
+			tree.remove(tree.search(tree.select(random.nextInt(tree.size()))));
+		}
+		ArrayList<Integer> inOrder = tree.toArrayList("IN");
+		if (tree.size() != inOrder.size()) {
+			throw new IllegalStateException("RB: tamanho " + tree.size() + " != " + inOrder.size());
+		}
+		for (int k = 0; k < inOrder.size(); k++) {
+			if (!tree.select(k).equals(inOrder.get(k))) {
+				throw new IllegalStateException("RB: select(" + k + ") errado");
+			}
+		}
+		for (int i = 0; i < 2000; i++) {
+			int lo = random.nextInt(20000), hi = lo + random.nextInt(2000);
+			int rank = 0, count = 0;
+			for (Integer key : inOrder) {
+				if (key < lo) rank++;
+				else if (key <= hi) count++;
+			}
+			if (tree.rank(lo) != rank || tree.countInRange(lo, hi) != count) {
+				throw new IllegalStateException("RB: rank/countInRange errado para [" + lo + ", " + hi + "]");
+			}
+		}
+		System.out.println("RB ok: " + tree.size() + " chaves");
+	}
+	//insere e remove chaves aleatórias, com repetições e remoções de chaves ausentes, e compara a rubro-negra
+	//com uma lista ordenada: retorno do remove, size(), ordem das chaves e select/rank. Roda também no modo
+	//multiconjunto, em que as repetições viram contagens nos nós
+	private static void testeRemocaoRB(boolean multiset) {
+		Random random = new Random(7);
+		RedBlackTree<Integer> tree = new RedBlackTree<Integer>(multiset, 64);
+		ArrayList<Integer> model = new ArrayList<Integer>();
+		for (int i = 0; i < 200000; i++) {
+			Integer key = random.nextInt(2000);
+			int index = Collections.binarySearch(model, key);
+			if (random.nextInt(2) == 0) {
+				tree.insert(key);
+				model.add(index < 0 ? -index - 1 : index, key);
+			} else if (tree.remove(key) != index >= 0) {
+				throw new IllegalStateException("RB: remove(" + key + ") retornou errado na operação " + i);
+			} else if (index >= 0) {
+				model.remove(index);
+			}
+			if (tree.size() != model.size()) {
+				throw new IllegalStateException("RB: tamanho " + tree.size() + " != " + model.size() + " na operação " + i);
+			}
+			if (i % 5000 == 0) {
+				if (!tree.validate() || !emOrdem(tree).equals(model)) {
+					throw new IllegalStateException("RB inválida na operação " + i);
+				}
+				for (int k = 0; k < model.size(); k += 1 + random.nextInt(50)) {
+					int first = k;
+					while (first > 0 && model.get(first - 1).equals(model.get(k))) first--;
+					if (!tree.select(k).equals(model.get(k)) || tree.rank(model.get(k)) != first) {
+						throw new IllegalStateException("RB: select/rank errado na operação " + i);
+					}
+				}
+			}
+		}
+		if (!tree.validate() || !emOrdem(tree).equals(model)
+				|| !tree.parallelStream().collect(Collectors.toList()).equals(model)) {
+			throw new IllegalStateException("RB inválida ao final");
+		}
+		System.out.println("RB remoção ok" + (multiset ? " (multiconjunto)" : "") + ": " + tree.size() + " chaves, "
+				+ tree.poolStats());
+	}
+	//faz as mesmas operações na rubro-negra de vetores e na de objetos e compara as duas; no fim esvazia e
+	//enche de novo para conferir que os slots da lista livre são reaproveitados
+	private static void testeRubroNegraVetores() {
+		Random random = new Random(11);
+		ArrayRedBlackTree<Integer> arrays = new ArrayRedBlackTree<Integer>();
+		RedBlackTree<Integer> objects = new RedBlackTree<Integer>();
+		for (int i = 0; i < 200000; i++) {
+			Integer key = random.nextInt(5000);
+			if (random.nextInt(3) > 0) {
+				arrays.insert(key);
+				objects.insert(key);
+			} else if (arrays.remove(key) != objects.remove(key)) {
+				throw new IllegalStateException("RB vetores: remove(" + key + ") diferente na operação " + i);
+			}
+			if (i % 5000 == 0 && (!arrays.validate() || arrays.size() != objects.size()
+					|| !arrays.toArrayList("PRE").equals(objects.toArrayList("PRE")))) {
+				throw new IllegalStateException("RB vetores inválida na operação " + i);
+			}
+		}
+		int capacity = arrays.capacity();
+		int size = arrays.size();
+		for (Integer key : objects.traverse(TraversalOrder.IN)) {
+			arrays.remove(key);
+		}
+		for (int i = 0; i < size; i++) {
+			arrays.insert(i);
+		}
+		if (!arrays.validate() || arrays.capacity() != capacity || arrays.size() != size) {
+			throw new IllegalStateException("RB vetores: slots livres não foram reaproveitados");
+		}
+		System.out.println("RB vetores ok: " + arrays.size() + " chaves, " + arrays.capacity() + " slots");
+	}
+
+	//escritores inserem e removem chaves ímpares enquanto leitores procuram as pares, que nunca saem da
+	//árvore, e chaves negativas, que nunca entram: as leituras otimistas não podem errar nenhuma delas
+	private static void testeRubroNegraConcorrente() {
+		final ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<Integer>(false, 64);
+		final int stable = 20000;
+		for (int i = 0; i < stable; i++) {
+			tree.insert(2 * i);
+		}
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger inserted = new AtomicInteger();
+		Thread[] threads = new Thread[6];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(id);
+					for (int i = 0; i < 200000; i++) {
+						if (id < 2) {
+							//cada escritor usa as suas próprias chaves ímpares e conta o saldo
+							Integer key = 2 * (random.nextInt(5000) * 2 + id) + 1;
+							if (random.nextBoolean()) {
+								tree.insert(key);
+								inserted.incrementAndGet();
+							} else if (tree.remove(key)) {
+								inserted.decrementAndGet();
+							}
+						} else {
+							int k = random.nextInt(stable);
+							if (!tree.contains(2 * k) || tree.contains(-1 - k) || tree.rank(2 * k) < k
+									|| tree.countInRange(-stable, -1) != 0 || tree.size() < stable) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		if (errors.get() != 0 || !tree.validate() || tree.size() != stable + inserted.get()) {
+			throw new IllegalStateException("RB concorrente: " + errors.get() + " leituras erradas, tamanho "
+					+ tree.size() + " != " + (stable + inserted.get()));
+		}
+		System.out.println("RB concorrente ok: " + tree.size() + " chaves");
+	}
+
+	//a AVL persistente deve ter as mesmas chaves da AVL comum, e os snapshots não podem
+	//mudar depois de tirados, nem enquanto outra thread continua escrevendo
+	private static void testeAVLPersistente() {
+		Random random = new Random(5);
+		final PersistentAVLTree<Integer> tree = new PersistentAVLTree<Integer>();
+		AVLTree<Integer> reference = new AVLTree<Integer>();
+		ArrayList<PersistentAVLTree<Integer>> snapshots = new ArrayList<PersistentAVLTree<Integer>>();
+		ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < 100000; i++) {
+			Integer key = random.nextInt(3000);
+			if (random.nextInt(3) > 0) {
+				tree.insert(key);
+				reference.insert(key);
+			} else if (tree.remove(key)) {
+				reference.remove(key);
+			} else if (reference.contains(key)) {
+				throw new IllegalStateException("AVL persistente: remove(" + key + ") não achou a chave");
+			}
+			if (i % 5000 == 0) {
+				if (!tree.validate() || tree.size() != reference.size()
+						|| !tree.toArrayList("IN").equals(reference.toArrayList("IN"))) {
+					throw new IllegalStateException("AVL persistente diferente da AVL na operação " + i);
+				}
+				snapshots.add(tree.snapshot());
+				expected.add(tree.toArrayList("IN"));
+			}
+		}
+		for (int i = 0; i < snapshots.size(); i++) {
+			if (!snapshots.get(i).validate() || !snapshots.get(i).toArrayList("IN").equals(expected.get(i))) {
+				throw new IllegalStateException("AVL persistente: snapshot " + i + " mudou");
+			}
+		}
+
+		final PersistentAVLTree<Integer> snapshot = tree.snapshot();
+		final ArrayList<Integer> frozen = snapshot.toArrayList("IN");
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Random random = new Random(6);
+				for (int i = 0; i < 200000; i++) {
+					Integer key = random.nextInt(3000);
+					if (random.nextBoolean()) tree.insert(key);
+					else tree.remove(key);
+				}
+			}
+		});
+		writer.start();
+		int reads = 0;
+		while (writer.isAlive() || reads == 0) {
+			if (!snapshot.toArrayList("IN").equals(frozen)) {
+				throw new IllegalStateException("AVL persistente: snapshot mudou durante as escritas");
+			}
+			reads++;
+		}
+		if (!tree.validate()) {
+			throw new IllegalStateException("AVL persistente inválida depois das escritas");
+		}
+		System.out.println("AVL persistente ok: " + tree.size() + " nós, " + reads + " leituras do snapshot");
+	}
+
+	//compara a árvore B com uma lista ordenada, com chaves repetidas, nas ordens 1, 2 e 5: retorno do remove,
+	//size(), validate() e as chaves em ordem. Roda no modo normal, que sobe pelo caminho guardado, e no
+	//top-down, que divide e completa os nós na descida
+	private static void testeArvoreB(boolean topDown) {
+		for (int order : new int[] { 1, 2, 5 }) {
+			Random random = new Random(23);
+			BTree<Integer> tree = new BTree<Integer>(order, topDown);
+			ArrayList<Integer> model = new ArrayList<Integer>();
+			for (int i = 0; i < 100000; i++) {
+				Integer key = random.nextInt(2000);
+				int index = Collections.binarySearch(model, key);
+				if (random.nextInt(5) < 3) {
+					tree.insert(key);
+					model.add(index < 0 ? -index - 1 : index, key);
+				} else if ((tree.remove(key) != null) != index >= 0) {
+					throw new IllegalStateException("B: remove(" + key + ") retornou errado na operação " + i);
+				} else if (index >= 0) {
+					model.remove(index);
+				}
+				if (tree.size() != model.size()) {
+					throw new IllegalStateException("B: tamanho " + tree.size() + " != " + model.size() + " na operação " + i);
+				}
+				if (i % 5000 == 0 && (!tree.validate() || !tree.stream(TraversalOrder.IN).collect(Collectors.toList()).equals(model))) {
+					throw new IllegalStateException("B inválida na operação " + i + " (ordem " + order + ")");
+				}
+			}
+			//esvazia a árvore, para as remoções passarem pela raiz diminuindo de altura
+			while (!model.isEmpty()) {
+				if (tree.remove(model.remove(random.nextInt(model.size()))) == null || !tree.validate()) {
+					throw new IllegalStateException("B: erro ao esvaziar (ordem " + order + ")");
+				}
+			}
+			if (tree.size() != 0 || tree.contains(0)) {
+				throw new IllegalStateException("B: árvore não ficou vazia (ordem " + order + ")");
+			}
+		}
+		System.out.println("B ok" + (topDown ? " (top-down)" : "") + ": ordens 1, 2 e 5");
+	}
+
+	//compara a árvore B de longs com uma lista ordenada, com chaves repetidas e os extremos de long, nas
+	//ordens 1, 2 e na padrão, e no fim esvazia a árvore
+	private static void testeArvoreBLong() {
+		for (int order : new int[] { 1, 2, LongBTree.DEFAULT_ORDER }) {
+			Random random = new Random(29);
+			LongBTree tree = new LongBTree(order);
+			ArrayList<Long> model = new ArrayList<Long>();
+			for (int i = 0; i < 100000; i++) {
+				int r = random.nextInt(2000);
+				Long key = r == 0 ? Long.MIN_VALUE : r == 1 ? Long.MAX_VALUE : (r - 1000) * 1000000007L;
+				int index = Collections.binarySearch(model, key);
+				if (random.nextInt(5) < 3) {
+					tree.insert(key);
+					model.add(index < 0 ? -index - 1 : index, key);
+				} else if (tree.remove(key) != index >= 0) {
+					throw new IllegalStateException("B long: remove(" + key + ") retornou errado na operação " + i);
+				} else if (index >= 0) {
+					model.remove(index);
+				}
+				if (tree.contains(key) != Collections.binarySearch(model, key) >= 0 || tree.size() != model.size()) {
+					throw new IllegalStateException("B long: contains/size errado na operação " + i);
+				}
+				if (i % 5000 == 0 && (!tree.validate() || !tree.stream().boxed().collect(Collectors.toList()).equals(model))) {
+					throw new IllegalStateException("B long inválida na operação " + i + " (ordem " + order + ")");
+				}
+			}
+			while (!model.isEmpty()) {
+				if (!tree.remove(model.remove(random.nextInt(model.size()))) || !tree.validate()) {
+					throw new IllegalStateException("B long: erro ao esvaziar (ordem " + order + ")");
+				}
+			}
+			if (tree.size() != 0 || tree.toArray().length != 0) {
+				throw new IllegalStateException("B long: árvore não ficou vazia (ordem " + order + ")");
+			}
+		}
+		System.out.println("B long ok: ordens 1, 2 e " + LongBTree.DEFAULT_ORDER);
+	}
+
+	//compara a árvore B paginada com uma lista ordenada, com chaves repetidas, nas ordens 1, 2 e 5 e com um
+	//cache de poucas páginas, para os nós saírem e voltarem do arquivo. De tempos em tempos fecha e reabre o
+	//arquivo, o que só remapeia as páginas, e no fim esvazia a árvore. Também confere que uma chave maior que o
+	//espaço da página é recusada sem estragar a árvore
+	private static void testeArvoreBPaginada() {
+		try {
+			for (int order : new int[] { 1, 2, 5 }) {
+				Random random = new Random(31);
+				Path file = Files.createTempFile("paginada", ".btree");
+				Files.delete(file);
+				PagedBTree<Long> tree = new PagedBTree<Long>(file, order, KeyCodec.longs(), 8);
+				ArrayList<Long> model = new ArrayList<Long>();
+				for (int i = 0; i < 30000; i++) {
+					Long key = (long) random.nextInt(2000);
+					int index = Collections.binarySearch(model, key);
+					if (random.nextInt(5) < 3) {
+						tree.insert(key);
+						model.add(index < 0 ? -index - 1 : index, key);
+					} else if ((tree.remove(key) != null) != index >= 0) {
+						throw new IllegalStateException("B paginada: remove(" + key + ") retornou errado na operação " + i);
+					} else if (index >= 0) {
+						model.remove(index);
+					}
+					if (tree.contains(key) != Collections.binarySearch(model, key) >= 0 || tree.size() != model.size()) {
+						throw new IllegalStateException("B paginada: contains/size errado na operação " + i);
+					}
+					if (i % 3000 == 0) {
+						//reabrir tem que devolver a mesma árvore
+						tree.close();
+						tree = new PagedBTree<Long>(file, order, KeyCodec.longs(), 8);
+						ArrayList<Long> keys = tree.toArrayList("IN");
+						if (!tree.validate() || tree.size() != model.size() || !(keys == null ? model.isEmpty() : keys.equals(model))) {
+							throw new IllegalStateException("B paginada inválida na operação " + i + " (ordem " + order + ")");
+						}
+					}
+				}
+				//validate lê todas as páginas, então no esvaziamento só roda de vez em quando
+				while (!model.isEmpty()) {
+					if (tree.remove(model.remove(random.nextInt(model.size()))) == null || (model.size() % 100 == 0 && !tree.validate())) {
+						throw new IllegalStateException("B paginada: erro ao esvaziar (ordem " + order + ")");
+					}
+				}
+				if (tree.size() != 0 || tree.contains(0L)) {
+					throw new IllegalStateException("B paginada: árvore não ficou vazia (ordem " + order + ")");
+				}
+				tree.close();
+				Files.delete(file);
+			}
+
+			//chave grande demais: insert recusa e a árvore continua usável
+			Path file = Files.createTempFile("paginada", ".btree");
+			Files.delete(file);
+			PagedBTree<String> tree = new PagedBTree<String>(file, 2, KeyCodec.utf8(4), 2);
+			tree.insert("a");
+			try {
+				tree.insert("abcdefgh");
+				throw new IllegalStateException("B paginada: chave de 8 bytes aceita com máximo de 4");
+			} catch (IllegalArgumentException e) {
+				//esperado
+			}
+			for (int i = 0; i < 100; i++) {
+				tree.insert(Integer.toString(i));
+			}
+			tree.close();
+			tree = new PagedBTree<String>(file, 2, KeyCodec.utf8(4), 2);
+			if (tree.size() != 101 || !tree.contains("a") || tree.contains("abcdefgh") || !tree.validate()) {
+				throw new IllegalStateException("B paginada: árvore estragada pela chave grande demais");
+			}
+			tree.close();
+			Files.delete(file);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		System.out.println("B paginada ok: ordens 1, 2 e 5, reaberturas e chave grande demais recusada");
+	}
+
+	//compara a árvore B+ com um TreeSet (ela não guarda chaves repetidas) nas ordens 1 a 6: retorno do insert e
+	//do remove, contains, size() e validate(), que confere as separadoras e a lista de folhas. As buscas por
+	//intervalo vão de intervalos vazios (to antes de from, ou entre duas chaves vizinhas) até intervalos que
+	//atravessam várias folhas, e são comparadas com subSet
+	private static void testeArvoreBMais() {
+		for (int order = 1; order <= 6; order++) {
+			Random random = new Random(37);
+			BPlusTree<Integer> tree = new BPlusTree<Integer>(order);
+			TreeSet<Integer> model = new TreeSet<Integer>();
+			for (int i = 0; i < 50000; i++) {
+				Integer key = random.nextInt(2000);
+				if (random.nextInt(5) < 3) {
+					if (tree.insert(key) != model.add(key)) {
+						throw new IllegalStateException("B+: insert(" + key + ") retornou errado na operação " + i);
+					}
+				} else if ((tree.remove(key) != null) != model.remove(key)) {
+					throw new IllegalStateException("B+: remove(" + key + ") retornou errado na operação " + i);
+				}
+				if (tree.contains(key) != model.contains(key) || tree.size() != model.size()) {
+					throw new IllegalStateException("B+: contains/size errado na operação " + i);
+				}
+				if (i % 500 == 0) {
+					if (!tree.validate()) {
+						throw new IllegalStateException("B+ inválida na operação " + i + " (ordem " + order + ")");
+					}
+					int from = random.nextInt(2100) - 50;
+					int to = from + random.nextInt(400) - 20;
+					ArrayList<Integer> range = new ArrayList<Integer>();
+					for (Integer value : tree.scan(from, to)) {
+						range.add(value);
+					}
+					ArrayList<Integer> expected = new ArrayList<Integer>(to < from ? new TreeSet<Integer>() : model.subSet(from, true, to, true));
+					if (!range.equals(expected)) {
+						throw new IllegalStateException("B+: scan(" + from + ", " + to + ") errado na operação " + i + " (ordem " + order + ")");
+					}
+				}
+			}
+			//intervalos sem nenhuma chave: entre duas chaves vizinhas, antes da primeira e depois da última
+			Integer lower = model.first();
+			for (Integer higher : model.tailSet(lower, false)) {
+				if (higher - lower > 1 && tree.scan(lower + 1, higher - 1).iterator().hasNext()) {
+					throw new IllegalStateException("B+: scan(" + (lower + 1) + ", " + (higher - 1) + ") deveria ser vazio");
+				}
+				lower = higher;
+			}
+			if (tree.scan(-10, -1).iterator().hasNext() || tree.scan(5000, 6000).iterator().hasNext()) {
+				throw new IllegalStateException("B+: scan fora das chaves deveria ser vazio (ordem " + order + ")");
+			}
+			//o intervalo inteiro anda por todas as folhas
+			ArrayList<Integer> all = new ArrayList<Integer>();
+			for (Integer value : tree.scan(Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+				all.add(value);
+			}
+			if (!all.equals(new ArrayList<Integer>(model)) || !tree.toArrayList("IN").equals(all)) {
+				throw new IllegalStateException("B+: percurso das folhas errado (ordem " + order + ")");
+			}
+			//esvazia a árvore em ordem aleatória, para as remoções juntarem folhas e diminuírem a altura
+			ArrayList<Integer> keys = new ArrayList<Integer>(model);
+			Collections.shuffle(keys, random);
+			for (Integer key : keys) {
+				if (tree.remove(key) == null || !tree.validate()) {
+					throw new IllegalStateException("B+: erro ao esvaziar (ordem " + order + ")");
+				}
+			}
+			if (tree.size() != 0 || tree.contains(0) || tree.iterator().hasNext()) {
+				throw new IllegalStateException("B+: árvore não ficou vazia (ordem " + order + ")");
+			}
+		}
+		System.out.println("B+ ok: ordens 1 a 6, com buscas por intervalo");
+	}
+
+	//primeiro compara a árvore B concorrente com um TreeSet em uma thread só, passando por todos os splits e
+	//junções; depois cada escritor insere e remove as suas próprias chaves (restos diferentes módulo o número de
+	//escritores) e guarda o conjunto esperado, enquanto leitores procuram as chaves estáveis, que nunca saem,
+	//e as negativas, que nunca entram. No fim a árvore tem que ser válida e ter exatamente a união dos conjuntos
+	private static void testeArvoreBConcorrente(int order) {
+		Random random = new Random(13);
+		ConcurrentBTree<Integer> single = new ConcurrentBTree<Integer>(order);
+		TreeSet<Integer> model = new TreeSet<Integer>();
+		for (int i = 0; i < 100000; i++) {
+			Integer key = random.nextInt(3000);
+			boolean changed = random.nextInt(5) < 3 ? single.insert(key) != model.add(key)
+					: single.remove(key) != model.remove(key);
+			if (changed || single.contains(key) != model.contains(key)) {
+				throw new IllegalStateException("B concorrente: resultado errado para " + key + " na operação " + i);
+			}
+			if (i % 5000 == 0 && (!single.validate() || !single.toArrayList().equals(new ArrayList<Integer>(model)))) {
+				throw new IllegalStateException("B concorrente inválida na operação " + i);
+			}
+		}
+
+		final ConcurrentBTree<Integer> tree = new ConcurrentBTree<Integer>(order);
+		final int stable = 10000;
+		final int writers = 3;
+		for (int i = 0; i < stable; i++) {
+			tree.insert(2 * i + 1);//chaves ímpares estáveis
+		}
+		final AtomicInteger errors = new AtomicInteger();
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		final TreeSet<Integer>[] expected = new TreeSet[writers];
+		Thread[] threads = new Thread[writers + 3];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			if (id < writers) expected[id] = new TreeSet<Integer>();
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(id);
+					for (int i = 0; i < 200000; i++) {
+						if (id < writers) {
+							//chaves pares deste escritor
+							Integer key = 2 * (random.nextInt(4000) * writers + id);
+							boolean ok = random.nextBoolean() ? tree.insert(key) == expected[id].add(key)
+									: tree.remove(key) == expected[id].remove(key);
+							if (!ok) errors.incrementAndGet();
+						} else {
+							int k = random.nextInt(stable);
+							if (!tree.contains(2 * k + 1) || tree.contains(-1 - k)) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		TreeSet<Integer> all = new TreeSet<Integer>();
+		for (int i = 0; i < stable; i++) {
+			all.add(2 * i + 1);
+		}
+		for (TreeSet<Integer> keys : expected) {
+			all.addAll(keys);
+		}
+		if (errors.get() != 0 || !tree.validate() || !tree.toArrayList().equals(new ArrayList<Integer>(all))) {
+			throw new IllegalStateException("B concorrente (ordem " + order + "): " + errors.get()
+					+ " operações erradas, tamanho " + tree.size() + " != " + all.size());
+		}
+		System.out.println("B concorrente ok (ordem " + order + "): " + tree.size() + " chaves");
+	}
+
+	//compara a árvore B versionada com uma lista ordenada, com chaves repetidas, e confere que os snapshots
+	//abertos no caminho não mudam depois. Depois um leitor percorre um snapshot enquanto outra thread escreve,
+	//e no fim as versões antigas têm que ser recolhidas pelo GC quando nenhum snapshot aponta mais para elas
+	private static void testeArvoreBVersionada(int order) {
+		Random random = new Random(17);
+		final VersionedBTree<Integer> tree = new VersionedBTree<Integer>(order);
+		ArrayList<Integer> model = new ArrayList<Integer>();
+		ArrayList<VersionedBTree.Snapshot<Integer>> snapshots = new ArrayList<VersionedBTree.Snapshot<Integer>>();
+		ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < 100000; i++) {
+			Integer key = random.nextInt(2000);
+			int index = Collections.binarySearch(model, key);
+			if (random.nextInt(5) < 3) {
+				tree.insert(key);
+				model.add(index < 0 ? -index - 1 : index, key);
+			} else if ((tree.remove(key) != null) != index >= 0) {
+				throw new IllegalStateException("B versionada: remove(" + key + ") retornou errado na operação " + i);
+			} else if (index >= 0) {
+				model.remove(index);
+			}
+			if (i % 5000 == 0) {
+				if (!tree.validate() || tree.size() != model.size() || !tree.toArrayList("IN").equals(model)) {
+					throw new IllegalStateException("B versionada inválida na operação " + i);
+				}
+				snapshots.add(tree.openSnapshot());
+				expected.add(new ArrayList<Integer>(model));
+			}
+		}
+		for (int i = 0; i < snapshots.size(); i++) {
+			if (!snapshots.get(i).validate() || !snapshots.get(i).toArrayList("IN").equals(expected.get(i))) {
+				throw new IllegalStateException("B versionada: snapshot " + i + " mudou");
+			}
+		}
+
+		final VersionedBTree.Snapshot<Integer> snapshot = tree.openSnapshot();
+		final ArrayList<Integer> frozen = snapshot.toArrayList("IN");
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Random random = new Random(18);
+				for (int i = 0; i < 200000; i++) {
+					Integer key = random.nextInt(2000);
+					if (random.nextBoolean()) tree.insert(key);
+					else tree.remove(key);
+				}
+			}
+		});
+		writer.start();
+		int scans = 0;
+		while (writer.isAlive() || scans == 0) {
+			if (!snapshot.toArrayList("IN").equals(frozen)) {
+				throw new IllegalStateException("B versionada: snapshot mudou durante as escritas");
+			}
+			scans++;
+		}
+		if (!tree.validate()) {
+			throw new IllegalStateException("B versionada inválida depois das escritas");
+		}
+
+		snapshots.clear();
+		WeakReference<Object> old = versaoAntiga(tree);
+		for (int i = 0; i < 10 && old.get() != null; i++) {
+			System.gc();
+		}
+		if (old.get() != null) {
+			throw new IllegalStateException("B versionada: versão antiga não foi recolhida");
+		}
+		System.out.println("B versionada ok (ordem " + order + "): " + tree.size() + " chaves, versão "
+				+ tree.openSnapshot().version() + ", " + scans + " leituras do snapshot");
+	}
+
+	//abre um snapshot, escreve por cima dele e devolve só uma referência fraca para ele
+	private static WeakReference<Object> versaoAntiga(VersionedBTree<Integer> tree) {
+		VersionedBTree.Snapshot<Integer> snapshot = tree.openSnapshot();
+		for (int i = 0; i < 100; i++) {
+			tree.insert(-i);
+			tree.remove(-i);
+		}
+		return new WeakReference<Object>(snapshot);
+	}
+
+	//chaves em ordem; ao contrário do toArrayList, devolve uma lista vazia para a árvore vazia
+	private static ArrayList<Integer> emOrdem(RedBlackTree<Integer> tree) {
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		for (Integer key : tree.traverse(TraversalOrder.IN)) {
+			keys.add(key);
+		}
+		return keys;
+	}
 
 }
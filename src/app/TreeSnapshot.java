@@ -0,0 +1,177 @@
+package app;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//snapshot binario das chaves de uma arvore, usado pelos comandos SAVE e LOAD. O arquivo tem um cabecalho com
+//o magic "TREE", a versao do formato, o tipo da arvore (AVL, RB ou BT), a ordem da arvore B (0 nas outras) e
+//o numero de chaves, todos big-endian, seguido das chaves em ordem crescente, cada uma em UTF-8 com o tamanho
+//antes, em um varint (7 bits por byte). Como as chaves ja vem ordenadas, o LOAD monta a arvore com bulkLoad em
+//tempo linear, lendo o arquivo mapeado em memoria sem copiar ele inteiro
+final class TreeSnapshot {
+	static final byte AVL = 1;
+	static final byte RB = 2;
+	static final byte BT = 3;
+
+	private static final int MAGIC = 0x54524545;//"TREE"
+	private static final byte VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 4;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final byte type;
+	private final int order;
+	private final int size;
+	private final MappedByteBuffer keys;//o arquivo mapeado, posicionado na primeira chave
+
+	private TreeSnapshot(byte type, int order, int size, MappedByteBuffer keys) {
+		this.type = type;
+		this.order = order;
+		this.size = size;
+		this.keys = keys;
+	}
+
+	//grava size chaves em ordem crescente. O arquivo e escrito ao lado com .tmp e so substitui o antigo no fim,
+	//entao um SAVE interrompido nao estraga o snapshot anterior; se der erro o .tmp e apagado
+	static void save(Path file, byte type, int order, int size, Iterator<String> sortedKeys) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				buffer.putInt(MAGIC).put(VERSION).put(type).putInt(order).putInt(size);
+				int written = 0;
+				while (sortedKeys.hasNext()) {
+					byte[] key = sortedKeys.next().getBytes(StandardCharsets.UTF_8);
+					if (buffer.remaining() < 5 + key.length) {
+						write(channel, buffer);
+						if (buffer.remaining() < 5 + key.length) {
+							//chave maior que o buffer: vai direto para o arquivo
+							putLength(buffer, key.length);
+							write(channel, buffer);
+							write(channel, ByteBuffer.wrap(key));
+							written++;
+							continue;
+						}
+					}
+					putLength(buffer, key.length);
+					buffer.put(key);
+					written++;
+				}
+				write(channel, buffer);
+				if (written != size)
+					throw new IOException("a arvore tinha " + written + " chaves e nao " + size);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			//qualquer falha no meio deixa so o snapshot anterior, sem o .tmp pela metade
+			try {
+				Files.deleteIfExists(temporary);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	private static void putLength(ByteBuffer buffer, int length) {//varint: 7 bits por byte, o bit alto diz se tem mais
+		while (length >= 0x80) {
+			buffer.put((byte) (length | 0x80));
+			length >>>= 7;
+		}
+		buffer.put((byte) length);
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {//escreve o buffer e limpa ele
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	//mapeia o arquivo e le o cabecalho; as chaves so sao lidas pelo iterador de keys()
+	static TreeSnapshot open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_SIZE)
+				throw new IOException("arquivo pequeno demais para um snapshot: " + file);
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("snapshot maior que 2 GB: " + file);
+			//o mapeamento continua valido depois que o canal e fechado
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("nao e um snapshot de arvore: " + file);
+			byte version = buffer.get();
+			if (version != VERSION)
+				throw new IOException("versao de snapshot desconhecida: " + version);
+			byte type = buffer.get();
+			int order = buffer.getInt();
+			int size = buffer.getInt();
+			if (type < AVL || type > BT || order < 0 || size < 0)
+				throw new IOException("cabecalho de snapshot invalido: " + file);
+			return new TreeSnapshot(type, order, size, buffer);
+		}
+	}
+
+	byte type() {
+		return type;
+	}
+
+	int order() {//ordem da arvore B salva, ou 0 se o snapshot veio de outra arvore
+		return order;
+	}
+
+	int size() {
+		return size;
+	}
+
+	//as size chaves do arquivo, em ordem; cada next decodifica uma chave direto do mapeamento.
+	//Um arquivo truncado ou com um tamanho de chave invalido faz o next lancar IllegalStateException
+	Iterator<String> keys() {
+		final ByteBuffer buffer = keys.duplicate();
+		return new Iterator<String>() {
+			private int read = 0;
+			private byte[] bytes = new byte[64];
+
+			@Override
+			public boolean hasNext() {
+				return read < size;
+			}
+
+			@Override
+			public String next() {
+				if (read == size) throw new NoSuchElementException();
+				try {
+					int length = 0;
+					for (int shift = 0;; shift += 7) {
+						//um int cabe em 5 bytes de varint
+						if (shift > 28)
+							throw new IllegalStateException("snapshot invalido na chave " + read + ": tamanho com mais de 5 bytes");
+						byte b = buffer.get();
+						length |= (b & 0x7F) << shift;
+						if (b >= 0) break;
+					}
+					if (length < 0)
+						throw new IllegalStateException("snapshot invalido na chave " + read + ": tamanho negativo");
+					if (length > buffer.remaining())
+						throw new IllegalStateException("snapshot truncado na chave " + read);
+					if (length > bytes.length) bytes = new byte[Math.max(length, bytes.length * 2)];
+					buffer.get(bytes, 0, length);
+					read++;
+					return new String(bytes, 0, length, StandardCharsets.UTF_8);
+				} catch (BufferUnderflowException e) {
+					throw new IllegalStateException("snapshot truncado na chave " + read);
+				}
+			}
+		};
+	}
+}
@@ -4,11 +4,15 @@ public class AVLNode<T extends Comparable<T>> {
 	private AVLNode<T> left; //filho esquerdo
 	private AVLNode<T> right; //filho direito
 	private T key; // chave do no
+	private int height; // altura da subrvore com raiz neste n
+	private int size; // nmero de ns da subrvore com raiz neste n
 	//inicializao de um node para AVLTree
 	public AVLNode(T key){
 		this.setKey(key);
 		this.setLeft(null);
 		this.setRight(null);
+		this.setHeight(1);
+		this.setSize(1);
 	}
 	//getters and setters
 	public AVLNode<T> getLeft() {
@@ -34,5 +38,21 @@ public class AVLNode<T extends Comparable<T>> {
 	public void setKey(T key) {
 		this.key = key;
 	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void setHeight(int height) {
+		this.height = height;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
 	
 }
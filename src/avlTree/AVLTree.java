@@ -1,59 +1,257 @@
 package avlTree;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import common.PoolStats;
+import common.TraversalOrder;
+import common.TreeCounters;
+import common.TreeOperationEvent;
 
 public class AVLTree<T extends Comparable<T>> {
 	private AVLNode<T> root;
+	//pilha com o caminho da raiz at o ponto de insero/remoo, reaproveitada entre as operaes
+	private AVLNode<T>[] path = newPath(32);
+	private int pathSize = 0;
+	//pool de ns removidos, encadeados pelo filho direito, que so reaproveitados nas prximas inseres
+	private AVLNode<T> pool = null;
+	private final PoolStats poolStats;
+	//rotaes e comparaes, contadas s com TreeCounters.ENABLED
+	private final TreeCounters counters = new TreeCounters();
+	//rotaes feitas at agora e ns visitados pela ltima insero ou remoo, para o TreeOperationEvent
+	private int restructurings = 0;
+	private int depth = 0;
 	//no construtor, a raiz  setada para null(rvore vazia)
 	public AVLTree(){
+		this(0);
+	}
+	//poolCapacity  quantos ns removidos a rvore guarda para reaproveitar; com 0 no h pool.
+	//Em uso contnuo de inseres e remoes, um pool do tamanho da variao da rvore faz as inseres
+	//no alocarem nada
+	public AVLTree(int poolCapacity){
 		this.setRoot(null);
+		this.poolStats = new PoolStats(poolCapacity);
+	}
+	//cria uma rvore j balanceada a partir de chaves em ordem crescente, em tempo linear e sem rotaes
+	public static <T extends Comparable<T>> AVLTree<T> bulkLoad(Iterator<T> sorted){
+		ArrayList<T> keys = new ArrayList<T>();
+		while(sorted.hasNext()){
+			keys.add(sorted.next());
+		}
+		return bulkLoad(keys.iterator(), keys.size());
+	}
+	//mesma coisa, mas sabendo quantas chaves viro: as chaves so consumidas em ordem enquanto a rvore  montada,
+	//sem nenhuma cpia intermediria
+	public static <T extends Comparable<T>> AVLTree<T> bulkLoad(final Iterator<T> sorted, int size){
+		AVLTree<T> tree = new AVLTree<T>();
+		tree.setRoot(tree.build(new Iterator<T>() {
+			private T last = null;
+			@Override
+			public boolean hasNext() {
+				return sorted.hasNext();
+			}
+			@Override
+			public T next() {
+				T key = sorted.next();
+				if(last != null && last.compareTo(key) > 0){
+					throw new IllegalArgumentException("As chaves no esto em ordem: " + key);
+				}
+				last = key;
+				return key;
+			}
+		}, size));
+		return tree;
+	}
+	//monta a subrvore com as prximas size chaves usando a chave do meio como raiz
+	private AVLNode<T> build(Iterator<T> sorted, int size){
+		if(size == 0) return null;
+		int leftSize = (size - 1) / 2;
+		AVLNode<T> left = build(sorted, leftSize);
+		AVLNode<T> node = new AVLNode<T>(sorted.next());
+		node.setLeft(left);
+		node.setRight(build(sorted, size - 1 - leftSize));
+		updateNode(node);
+		return node;
 	}
-	//insero de um n - mtodo visvel
+	//insero de um n.  feita de maneira iterativa: a descida guarda o caminho na pilha e depois
+	//o caminho  rebalanceado de baixo para cima
 	public void insert(T key){
-		this.setRoot(this.insert(key, root));		
+		TreeOperationEvent event = TreeOperationEvent.start();
+		int restructurings = this.restructurings;
+		insertKey(key);
+		event.finish("AVL", "insert", key, depth, this.restructurings - restructurings, size());
 	}
-	//insero - mtodo real.  feito de maneira recursiva, remontando a rvore
-	private AVLNode<T> insert(T key, AVLNode<T> node){		
-		if(node != null){
+	private void insertKey(T key){
+		if(TreeCounters.ENABLED) counters.operation();
+		AVLNode<T> newNode = newNode(key);
+		if(root == null){
+			this.setRoot(newNode);
+			depth = 1;
+			return;
+		}
+		AVLNode<T> node = root;
+		while(true){
+			pushPath(node);
+			//o novo n ficar na subrvore de todos os ns do caminho
+			node.setSize(node.getSize()+1);
+			if(TreeCounters.ENABLED) counters.comparison();
 			if(key.compareTo(node.getKey())<0){
-				node.setLeft(insert(key, node.getLeft()));
+				if(node.getLeft() == null){
+					node.setLeft(newNode);
+					break;
+				}
+				node = node.getLeft();
 			}else{
-				node.setRight(insert(key, node.getRight()));
+				if(node.getRight() == null){
+					node.setRight(newNode);
+					break;
+				}
+				node = node.getRight();
 			}
-			node = adjustTree(node);
-			return node;
 		}
-		AVLNode<T> newNode = new AVLNode<T>(key);
-		return newNode;
+		depth = pathSize + 1;
+		rebalancePath();
 	}
-	//remoo de um n - mtodo visvel
+	//remoo de um n. Assim como na insero,  feita de maneira iterativa usando a pilha de caminho.
+	//Se a chave no existir, a rvore no  alterada e  lanada NullPointerException, como na verso recursiva.
 	public void remove(T key){
-		root = remove(key, root);
-	}
-	//remoo de um n - mtodo real. Assim como na insero,  feita de maneira recursiva remontando a rvore.
-	private AVLNode<T> remove(T key, AVLNode<T> node){
-		if(key.compareTo(node.getKey())<0){
-			node.setLeft(remove(key, node.getLeft()));
-			
-		}else if(key.compareTo(node.getKey())>0){
-			node.setRight(remove(key, node.getRight()));
-			
-		}else{
-			if(node.getLeft() == null){
-				node = node.getRight();
-			}else if(node.getRight() == null){
-				node = node.getLeft();
-			}else{
+		TreeOperationEvent event = TreeOperationEvent.start();
+		int restructurings = this.restructurings;
+		try{
+			removeKey(key);
+		}finally{
+			event.finish("AVL", "remove", key, depth, this.restructurings - restructurings, size());
+		}
+	}
+	private void removeKey(T key){
+		if(TreeCounters.ENABLED) counters.operation();
+		AVLNode<T> node = root;
+		while(true){
+			if(node == null){
+				depth = pathSize;
+				clearPath();
+				throw new NullPointerException("Valor no encontrado: " + key);
+			}
+			if(TreeCounters.ENABLED) counters.comparison();
+			int cmp = key.compareTo(node.getKey());
+			if(cmp == 0){
+				if(node.getLeft() == null || node.getRight() == null) break;
+				//com dois filhos, a chave  trocada com a do sucessor e a remoo continua na subrvore direita
 				swap(node, minNode(node.getRight()));
-				node.setRight(remove(key, node.getRight()));
+				cmp = 1;
 			}
-		}		
-		if(node != null) node = adjustTree(node);
+			pushPath(node);
+			node = cmp < 0 ? node.getLeft() : node.getRight();
+		}
+		AVLNode<T> removed = node;
+		depth = pathSize + 1;
+		replaceChild(pathSize > 0 ? path[pathSize-1] : null, removed,
+				removed.getLeft() != null ? removed.getLeft() : removed.getRight());
+		for(int i = 0; i < pathSize; i++){
+			path[i].setSize(path[i].getSize()-1);
+		}
+		rebalancePath();
+		release(removed);
+	}
+	//pega um n do pool ou cria um novo
+	private AVLNode<T> newNode(T key){
+		AVLNode<T> node = pool;
+		poolStats.recordRequest(node != null);
+		if(node == null) return new AVLNode<T>(key);
+		pool = node.getRight();
+		node.setKey(key);
+		node.setLeft(null);
+		node.setRight(null);
+		node.setHeight(1);
+		node.setSize(1);
 		return node;
 	}
+	//guarda no pool um n que saiu da rvore, se ainda houver espao
+	private void release(AVLNode<T> node){
+		node.setLeft(null);
+		node.setKey(null);
+		if(poolStats.recordRelease()){
+			node.setRight(pool);
+			pool = node;
+		}else{
+			node.setRight(null);
+		}
+	}
+	//contadores do pool de ns
+	public PoolStats poolStats(){
+		return poolStats;
+	}
+	//contadores de rotaes e comparaes
+	public TreeCounters counters(){
+		return counters;
+	}
+	//busca uma chave descendo da raiz
+	public boolean contains(T key){
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if(TreeCounters.ENABLED) counters.operation();
+		AVLNode<T> node = root;
+		int depth = 0;
+		boolean found = false;
+		while(node != null){
+			depth++;
+			if(TreeCounters.ENABLED) counters.comparison();
+			int cmp = key.compareTo(node.getKey());
+			if(cmp == 0){
+				found = true;
+				break;
+			}
+			node = cmp < 0 ? node.getLeft() : node.getRight();
+		}
+		event.finish("AVL", "search", key, depth, 0, size());
+		return found;
+	}
+	//percorre o caminho guardado de baixo para cima ajustando cada n. Para assim que a altura de uma
+	//subrvore no muda, pois da para cima nada mais precisa ser rebalanceado
+	private void rebalancePath(){
+		for(int i = pathSize-1; i >= 0; i--){
+			AVLNode<T> node = path[i];
+			int oldHeight = node.getHeight();
+			AVLNode<T> balanced = adjustTree(node);
+			if(balanced != node){
+				replaceChild(i > 0 ? path[i-1] : null, node, balanced);
+			}
+			if(balanced.getHeight() == oldHeight) break;
+		}
+		clearPath();
+	}
+	//troca o filho oldChild de parent por newChild. Se parent for null, oldChild era a raiz
+	private void replaceChild(AVLNode<T> parent, AVLNode<T> oldChild, AVLNode<T> newChild){
+		if(parent == null){
+			this.setRoot(newChild);
+		}else if(parent.getLeft() == oldChild){
+			parent.setLeft(newChild);
+		}else{
+			parent.setRight(newChild);
+		}
+	}
+	//empilha um n no caminho, dobrando a pilha quando ela enche
+	private void pushPath(AVLNode<T> node){
+		if(pathSize == path.length){
+			path = Arrays.copyOf(path, pathSize*2);
+		}
+		path[pathSize++] = node;
+	}
+	//esvazia a pilha sem manter referncias para ns antigos
+	private void clearPath(){
+		Arrays.fill(path, 0, pathSize, null);
+		pathSize = 0;
+	}
 	//esse mtodo  chamado aps uma insero ou remoo, para todos os ns do caminho, verificando se esto balanceados. 
 	//Caso no estejam balanceados, as rotaes necessrias so realizadas.
 	private AVLNode<T> adjustTree(AVLNode<T> node){
+		updateNode(node);
 		if(balancingFactor(node) > 1){
 			if(balancingFactor(node.getRight()) < 0){
 				node = doubleLeftRotation(node);
@@ -74,9 +272,13 @@ public class AVLTree<T extends Comparable<T>> {
 	
 	//rotao simples para a esquerda
 	private AVLNode<T> leftRotation(AVLNode<T> x){
+		if(TreeCounters.ENABLED) counters.rotation();
+		restructurings++;
 		AVLNode<T> y = x.getRight();
 		x.setRight(y.getLeft());
 		y.setLeft(x);		
+		updateNode(x);
+		updateNode(y);
 		return y;
 	}
 	//rotao dupla para a esquerda
@@ -87,9 +289,13 @@ public class AVLTree<T extends Comparable<T>> {
 	}
 	//rotao simples para a direita
 	private AVLNode<T> rightRotation(AVLNode<T> x){
+		if(TreeCounters.ENABLED) counters.rotation();
+		restructurings++;
 		AVLNode<T> y = x.getLeft();
 		x.setLeft(y.getRight());
 		y.setRight(x);		
+		updateNode(x);
+		updateNode(y);
 		return y;
 	}
 	//rotao dupla para a direita
@@ -122,10 +328,20 @@ public class AVLTree<T extends Comparable<T>> {
 	private int balancingFactor(AVLNode<T> node){
 		return nodeHeight(node.getRight())-nodeHeight(node.getLeft());
 	}
-	//retorna a altura de um n
+	//retorna a altura de um n, que fica guardada no prprio n
 	private int nodeHeight(AVLNode<T> node){
 		if(node == null) return 0;
-		return max(nodeHeight(node.getLeft()),nodeHeight(node.getRight()))+1;
+		return node.getHeight();
+	}
+	//retorna o nmero de ns da subrvore de um n
+	private int nodeSize(AVLNode<T> node){
+		if(node == null) return 0;
+		return node.getSize();
+	}
+	//recalcula a altura e o tamanho de um n a partir dos filhos. Os filhos j devem estar atualizados.
+	private void updateNode(AVLNode<T> node){
+		node.setHeight(max(nodeHeight(node.getLeft()),nodeHeight(node.getRight()))+1);
+		node.setSize(nodeSize(node.getLeft())+nodeSize(node.getRight())+1);
 	}
 	//retorna de dois nmeros, qual  o maior
 	private int max(int a, int b){
@@ -133,6 +349,44 @@ public class AVLTree<T extends Comparable<T>> {
 		return b;
 	}
 	
+	//retorna o nmero de ns da rvore
+	public int size(){
+		return nodeSize(root);
+	}
+	//retorna a altura da rvore
+	public int height(){
+		return nodeHeight(root);
+	}
+	//rotaes feitas desde a criao da rvore
+	public int restructurings(){
+		return restructurings;
+	}
+	//valida a rvore: ordem das chaves, fator de balanceamento e se a altura e o tamanho guardados em cada n
+	//batem com os valores recalculados
+	public boolean validate(){
+		return validate(root, null, null) >= 0;
+	}
+	//retorna a altura recalculada da subrvore ou -1 se alguma propriedade foi violada
+	private int validate(AVLNode<T> node, T min, T max){
+		if(node == null) return 0;
+		if(min != null && node.getKey().compareTo(min) < 0) return -1;
+		if(max != null && node.getKey().compareTo(max) > 0) return -1;
+		int left = validate(node.getLeft(), min, node.getKey());
+		if(left < 0) return -1;
+		int right = validate(node.getRight(), node.getKey(), max);
+		if(right < 0) return -1;
+		if(right - left > 1 || left - right > 1) return -1;
+		int height = max(left, right) + 1;
+		if(node.getHeight() != height) return -1;
+		if(node.getSize() != nodeSize(node.getLeft()) + nodeSize(node.getRight()) + 1) return -1;
+		return height;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	private static <T extends Comparable<T>> AVLNode<T>[] newPath(int length){
+		return new AVLNode[length];
+	}
+	
 	//getters and setters
 	public AVLNode<T> getRoot() {
 		return root;
@@ -141,32 +395,101 @@ public class AVLTree<T extends Comparable<T>> {
 	public void setRoot(AVLNode<T> root) {
 		this.root = root;
 	}
-	//mtodo de visitao utilizado para retornar os ns em uma determinada ordem: PRE, IN ou POS ORDER
-	private void visit(AVLNode<T> node, String type, ArrayList<T> list){
-		if(node != null){
-			if(type.equals("PRE")){
-				list.add(node.getKey());
-				visit(node.getLeft(), type, list);				
-				visit(node.getRight(), type, list);				
-			}else if(type.equals("POS")){
-				visit(node.getLeft(), type, list);				
-				visit(node.getRight(), type, list);
-				list.add(node.getKey());
-			}else{
-				visit(node.getLeft(), type, list);	
-				list.add(node.getKey());
-				visit(node.getRight(), type, list);					
+	//percursos sem recurso e sem copiar a rvore: o iterador guarda s uma pilha com um caminho da rvore
+	public Iterator<T> iterator(TraversalOrder order){
+		return new TraversalIterator<T>(root, order);
+	}
+	//o mesmo percurso para usar em um for
+	public Iterable<T> traverse(final TraversalOrder order){
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return AVLTree.this.iterator(order);
 			}
-		}
+		};
+	}
+	public Spliterator<T> spliterator(TraversalOrder order){
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+		if(order == TraversalOrder.IN) characteristics |= Spliterator.SORTED;
+		return Spliterators.spliterator(iterator(order), size(), characteristics);
+	}
+	public Stream<T> stream(TraversalOrder order){
+		return StreamSupport.stream(spliterator(order), false);
 	}
 	//mtodo visvel em que o usurio informa o tipo de ordenao que deseja: PRE, IN ou POS ORDER
 	public ArrayList<T> toArrayList(String type){
 		if(getRoot() == null) return null;
 		
-		ArrayList<T> ret = new ArrayList<T>();
+		TreeOperationEvent event = TreeOperationEvent.start();
+		ArrayList<T> ret = new ArrayList<T>(size());
 		
-		visit(root, type, ret);
+		for(T key : traverse(TraversalOrder.parse(type))){
+			ret.add(key);
+		}
+		event.finish("AVL", "traverse", null, height(), 0, size());
 		
 		return ret;
 	}
+	
+	//iterador de percurso com pilha explcita
+	private static class TraversalIterator<T extends Comparable<T>> implements Iterator<T> {
+		private final ArrayDeque<AVLNode<T>> stack = new ArrayDeque<AVLNode<T>>();
+		private final TraversalOrder order;
+		
+		TraversalIterator(AVLNode<T> root, TraversalOrder order){
+			this.order = order;
+			if(root == null) return;
+			switch(order){
+			case PRE:
+				stack.push(root);
+				break;
+			case IN:
+				pushLeftPath(root);
+				break;
+			case POS:
+				pushFirstLeafPath(root);
+				break;
+			}
+		}
+		//empilha o n e todos os filhos esquerdos abaixo dele
+		private void pushLeftPath(AVLNode<T> node){
+			while(node != null){
+				stack.push(node);
+				node = node.getLeft();
+			}
+		}
+		//empilha o caminho at a primeira folha da ps-ordem: sempre pela esquerda, ou pela direita se no houver esquerda
+		private void pushFirstLeafPath(AVLNode<T> node){
+			while(node != null){
+				stack.push(node);
+				node = node.getLeft() != null ? node.getLeft() : node.getRight();
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+		@Override
+		public T next() {
+			if(stack.isEmpty()) throw new NoSuchElementException();
+			AVLNode<T> node = stack.pop();
+			switch(order){
+			case PRE:
+				if(node.getRight() != null) stack.push(node.getRight());
+				if(node.getLeft() != null) stack.push(node.getLeft());
+				break;
+			case IN:
+				pushLeftPath(node.getRight());
+				break;
+			case POS:
+				//se o n era filho esquerdo, ainda falta percorrer a subrvore direita do pai
+				AVLNode<T> parent = stack.peek();
+				if(parent != null && parent.getLeft() == node){
+					pushFirstLeafPath(parent.getRight());
+				}
+				break;
+			}
+			return node.getKey();
+		}
+	}
 }
@@ -0,0 +1,49 @@
+package avlTree;
+
+//no imutavel do PersistentAVLTree: todos os campos sao final, entao um no nunca muda depois de criado
+//e pode ser compartilhado por varias versoes da arvore e lido por varias threads sem lock
+public class PersistentAVLNode<T extends Comparable<T>> {
+	private final PersistentAVLNode<T> left; //filho esquerdo
+	private final PersistentAVLNode<T> right; //filho direito
+	private final T key; // chave do no
+	private final int height; // altura da subarvore com raiz neste no
+	private final int size; // numero de nos da subarvore com raiz neste no
+
+	//altura e tamanho sao calculados a partir dos filhos
+	PersistentAVLNode(T key, PersistentAVLNode<T> left, PersistentAVLNode<T> right) {
+		this.key = key;
+		this.left = left;
+		this.right = right;
+		this.height = Math.max(height(left), height(right)) + 1;
+		this.size = size(left) + size(right) + 1;
+	}
+
+	static int height(PersistentAVLNode<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	static int size(PersistentAVLNode<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	//getters
+	public PersistentAVLNode<T> getLeft() {
+		return left;
+	}
+
+	public PersistentAVLNode<T> getRight() {
+		return right;
+	}
+
+	public T getKey() {
+		return key;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,257 @@
+package avlTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import common.TraversalOrder;
+
+//AVL persistente: os nos sao imutaveis e cada insercao ou remocao copia so o caminho da raiz ate o ponto
+//alterado, criando uma nova raiz que compartilha todas as outras subarvores com a versao anterior.
+//Uma versao nunca muda depois de publicada, entao snapshot() so guarda a raiz atual (O(1)) e leitores em
+//outras threads percorrem o snapshot sem lock enquanto as escritas continuam na arvore original.
+//As escritas sao serializadas pelo monitor da arvore; as leituras nunca bloqueiam
+public class PersistentAVLTree<T extends Comparable<T>> {
+	private volatile PersistentAVLNode<T> root;//versao atual, trocada inteira a cada escrita
+
+	public PersistentAVLTree() {
+		this(null);
+	}
+
+	private PersistentAVLTree(PersistentAVLNode<T> root) {
+		this.root = root;
+	}
+
+	//versao congelada da arvore: escritas posteriores nesta arvore nao aparecem nela, e escritas no
+	//snapshot nao aparecem aqui
+	public PersistentAVLTree<T> snapshot() {
+		return new PersistentAVLTree<T>(root);
+	}
+
+	//insere a chave e retorna a nova raiz; chaves iguais vao para a direita, como no AVLTree
+	public synchronized PersistentAVLNode<T> insert(T key) {
+		root = insert(root, key);
+		return root;
+	}
+
+	//remove uma ocorrencia da chave; retorna false se ela nao existe
+	public synchronized boolean remove(T key) {
+		PersistentAVLNode<T> newRoot = remove(root, key);
+		if (newRoot == root)
+			return false;
+		root = newRoot;
+		return true;
+	}
+
+	//copia o caminho da descida; os nos fora dele sao reaproveitados
+	private PersistentAVLNode<T> insert(PersistentAVLNode<T> node, T key) {
+		if (node == null)
+			return new PersistentAVLNode<T>(key, null, null);
+		if (key.compareTo(node.getKey()) < 0)
+			return balance(node.getKey(), insert(node.getLeft(), key), node.getRight());
+		return balance(node.getKey(), node.getLeft(), insert(node.getRight(), key));
+	}
+
+	//retorna o proprio node quando a chave nao esta na subarvore, para nada ser copiado
+	private PersistentAVLNode<T> remove(PersistentAVLNode<T> node, T key) {
+		if (node == null)
+			return null;
+		int cmp = key.compareTo(node.getKey());
+		if (cmp < 0) {
+			PersistentAVLNode<T> left = remove(node.getLeft(), key);
+			return left == node.getLeft() ? node : balance(node.getKey(), left, node.getRight());
+		}
+		if (cmp > 0) {
+			PersistentAVLNode<T> right = remove(node.getRight(), key);
+			return right == node.getRight() ? node : balance(node.getKey(), node.getLeft(), right);
+		}
+		if (node.getLeft() == null)
+			return node.getRight();
+		if (node.getRight() == null)
+			return node.getLeft();
+		//com dois filhos, o sucessor toma o lugar do no
+		PersistentAVLNode<T> min = node.getRight();
+		while (min.getLeft() != null)
+			min = min.getLeft();
+		return balance(min.getKey(), node.getLeft(), removeMin(node.getRight()));
+	}
+
+	private PersistentAVLNode<T> removeMin(PersistentAVLNode<T> node) {
+		if (node.getLeft() == null)
+			return node.getRight();
+		return balance(node.getKey(), removeMin(node.getLeft()), node.getRight());
+	}
+
+	//cria o no com essa chave e filhos, rotacionando se a diferenca de altura passar de 1
+	private PersistentAVLNode<T> balance(T key, PersistentAVLNode<T> left, PersistentAVLNode<T> right) {
+		int factor = PersistentAVLNode.height(right) - PersistentAVLNode.height(left);
+		if (factor > 1) {
+			if (PersistentAVLNode.height(right.getLeft()) > PersistentAVLNode.height(right.getRight())) {
+				//rotacao dupla a esquerda
+				PersistentAVLNode<T> middle = right.getLeft();
+				return new PersistentAVLNode<T>(middle.getKey(),
+						new PersistentAVLNode<T>(key, left, middle.getLeft()),
+						new PersistentAVLNode<T>(right.getKey(), middle.getRight(), right.getRight()));
+			}
+			return new PersistentAVLNode<T>(right.getKey(), new PersistentAVLNode<T>(key, left, right.getLeft()),
+					right.getRight());
+		}
+		if (factor < -1) {
+			if (PersistentAVLNode.height(left.getRight()) > PersistentAVLNode.height(left.getLeft())) {
+				//rotacao dupla a direita
+				PersistentAVLNode<T> middle = left.getRight();
+				return new PersistentAVLNode<T>(middle.getKey(),
+						new PersistentAVLNode<T>(left.getKey(), left.getLeft(), middle.getLeft()),
+						new PersistentAVLNode<T>(key, middle.getRight(), right));
+			}
+			return new PersistentAVLNode<T>(left.getKey(), left.getLeft(),
+					new PersistentAVLNode<T>(key, left.getRight(), right));
+		}
+		return new PersistentAVLNode<T>(key, left, right);
+	}
+
+	public boolean contains(T key) {
+		PersistentAVLNode<T> node = root;
+		while (node != null) {
+			int cmp = key.compareTo(node.getKey());
+			if (cmp == 0)
+				return true;
+			node = cmp < 0 ? node.getLeft() : node.getRight();
+		}
+		return false;
+	}
+
+	//raiz da versao atual; como os nos sao imutaveis, ela pode ser guardada e lida a qualquer momento
+	public PersistentAVLNode<T> getRoot() {
+		return root;
+	}
+
+	public int size() {
+		return PersistentAVLNode.size(root);
+	}
+
+	public int height() {
+		return PersistentAVLNode.height(root);
+	}
+
+	//valida a versao atual: ordem das chaves, fator de balanceamento, altura e tamanho de cada no
+	public boolean validate() {
+		return validate(root, null, null) >= 0;
+	}
+
+	//retorna a altura recalculada da subarvore ou -1 se alguma propriedade foi violada
+	private int validate(PersistentAVLNode<T> node, T min, T max) {
+		if (node == null) return 0;
+		if (min != null && node.getKey().compareTo(min) < 0) return -1;
+		if (max != null && node.getKey().compareTo(max) > 0) return -1;
+		int left = validate(node.getLeft(), min, node.getKey());
+		int right = validate(node.getRight(), node.getKey(), max);
+		if (left < 0 || right < 0 || Math.abs(right - left) > 1) return -1;
+		if (node.getHeight() != Math.max(left, right) + 1) return -1;
+		if (node.getSize() != PersistentAVLNode.size(node.getLeft()) + PersistentAVLNode.size(node.getRight()) + 1)
+			return -1;
+		return node.getHeight();
+	}
+
+	//percursos da versao atual no momento da chamada; escritas feitas depois nao afetam o iterador
+	public Iterator<T> iterator(TraversalOrder order) {
+		return new TraversalIterator<T>(root, order);
+	}
+
+	//o mesmo percurso para usar em um for
+	public Iterable<T> traverse(final TraversalOrder order) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return PersistentAVLTree.this.iterator(order);
+			}
+		};
+	}
+
+	public Stream<T> stream(TraversalOrder order) {
+		PersistentAVLNode<T> version = root;
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+		if (order == TraversalOrder.IN)
+			characteristics |= Spliterator.SORTED;
+		return StreamSupport.stream(Spliterators.spliterator(new TraversalIterator<T>(version, order),
+				PersistentAVLNode.size(version), characteristics), false);
+	}
+
+	//mesmo contrato do toArrayList do AVLTree: PRE, IN ou POS
+	public ArrayList<T> toArrayList(String type) {
+		PersistentAVLNode<T> version = root;
+		ArrayList<T> list = new ArrayList<T>(PersistentAVLNode.size(version));
+		Iterator<T> iterator = new TraversalIterator<T>(version, TraversalOrder.parse(type));
+		while (iterator.hasNext())
+			list.add(iterator.next());
+		return list;
+	}
+
+	//iterador com uma pilha, igual ao do AVLTree
+	private static class TraversalIterator<T extends Comparable<T>> implements Iterator<T> {
+		private final ArrayDeque<PersistentAVLNode<T>> stack = new ArrayDeque<PersistentAVLNode<T>>();
+		private final TraversalOrder order;
+
+		TraversalIterator(PersistentAVLNode<T> root, TraversalOrder order) {
+			this.order = order;
+			if (root == null) return;
+			switch (order) {
+			case PRE:
+				stack.push(root);
+				break;
+			case IN:
+				pushLeftPath(root);
+				break;
+			case POS:
+				pushFirstLeafPath(root);
+				break;
+			}
+		}
+
+		private void pushLeftPath(PersistentAVLNode<T> node) {
+			while (node != null) {
+				stack.push(node);
+				node = node.getLeft();
+			}
+		}
+
+		private void pushFirstLeafPath(PersistentAVLNode<T> node) {
+			while (node != null) {
+				stack.push(node);
+				node = node.getLeft() != null ? node.getLeft() : node.getRight();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		@Override
+		public T next() {
+			if (stack.isEmpty()) throw new NoSuchElementException();
+			PersistentAVLNode<T> node = stack.pop();
+			switch (order) {
+			case PRE:
+				if (node.getRight() != null) stack.push(node.getRight());
+				if (node.getLeft() != null) stack.push(node.getLeft());
+				break;
+			case IN:
+				pushLeftPath(node.getRight());
+				break;
+			case POS:
+				PersistentAVLNode<T> parent = stack.peek();
+				if (parent != null && parent.getLeft() == node) {
+					pushFirstLeafPath(parent.getRight());
+				}
+				break;
+			}
+			return node.getKey();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package benchmark;
+
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Random;
+
+import btree.BTree;
+//mede insercao, busca e remocao na arvore B para ordens de 2 a 512, no modo normal (que sobe pelo caminho
+//para dividir e combinar os nos) e no top-down (que resolve tudo na descida)
+//uso: java benchmark.BTreeOrderBenchmark [numero de chaves]
+public class BTreeOrderBenchmark {
+	private static final int WARMUP_ROUNDS = 2;//rodadas descartadas para o JIT compilar o codigo
+	private static final int ROUNDS = 3;//rodadas medidas, e reportada a melhor
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		ArrayList<Integer> keys = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++) {
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(42));
+
+		System.out.println("chaves: " + n);
+		System.out.printf("%6s %-9s %12s %12s %12s%n", "ordem", "modo", "insert ns/op", "search ns/op", "remove ns/op");
+		for (int order = 2; order <= 512; order *= 2) {
+			for (boolean topDown : new boolean[] { false, true }) {
+				long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+				for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+					long[] times = run(order, topDown, keys);
+					if (round < WARMUP_ROUNDS) continue;
+					for (int i = 0; i < best.length; i++) {
+						best[i] = Math.min(best[i], times[i]);
+					}
+				}
+				System.out.printf("%6d %-9s %12.1f %12.1f %12.1f%n", order, topDown ? "top-down" : "normal",
+						(double) best[0] / n, (double) best[1] / n, (double) best[2] / n);
+			}
+		}
+	}
+
+	//executa uma rodada e retorna o tempo total, em nanossegundos, de insercao, busca e remocao
+	private static long[] run(int order, boolean topDown, ArrayList<Integer> keys) {
+		BTree<Integer> tree = new BTree<Integer>(order, topDown);
+		long[] times = new long[3];
+
+		long start = System.nanoTime();
+		for (Integer key : keys) {
+			tree.insert(key);
+		}
+		times[0] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int found = 0;
+		for (Integer key : keys) {
+			if (tree.contains(key)) found++;
+		}
+		times[1] = System.nanoTime() - start;
+		if (found != keys.size()) throw new IllegalStateException("chaves perdidas na ordem " + order);
+
+		start = System.nanoTime();
+		for (Integer key : keys) {
+			tree.remove(key);
+		}
+		times[2] = System.nanoTime() - start;
+		if (tree.size() != 0) throw new IllegalStateException("arvore nao esvaziou na ordem " + order);
+
+		return times;
+	}
+}
@@ -0,0 +1,131 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import btree.BTree;
+import btree.ConcurrentBTree;
+
+//compara o BTree protegido por um synchronized global com o ConcurrentBTree (latch crabbing) em uma carga
+//com a porcentagem pedida de buscas e o resto dividido entre insercoes e remocoes, com 1, 2, 4, ... threads
+//uso: java benchmark.ConcurrentBTreeBenchmark [numero de chaves] [maximo de threads] [ms por medida]
+//                                             [ordem] [% de buscas]
+public class ConcurrentBTreeBenchmark {
+
+	//operacoes medidas, na mesma interface para as duas versoes
+	private interface Target {
+		boolean contains(Integer key);
+
+		boolean insert(Integer key);
+
+		boolean remove(Integer key);
+	}
+
+	//a forma de uso atual: um unico monitor em volta da arvore. O BTree aceita chaves repetidas, entao a
+	//insercao confere antes para as duas versoes guardarem o mesmo conjunto
+	private static class SynchronizedTarget implements Target {
+		private final BTree<Integer> tree;
+
+		SynchronizedTarget(int order) { tree = new BTree<Integer>(order); }
+
+		public synchronized boolean contains(Integer key) { return tree.contains(key); }
+
+		public synchronized boolean insert(Integer key) { return !tree.contains(key) && tree.insert(key); }
+
+		public synchronized boolean remove(Integer key) { return tree.remove(key) != null; }
+	}
+
+	private static class LatchTarget implements Target {
+		private final ConcurrentBTree<Integer> tree;
+
+		LatchTarget(int order) { tree = new ConcurrentBTree<Integer>(order); }
+
+		public boolean contains(Integer key) { return tree.contains(key); }
+
+		public boolean insert(Integer key) { return tree.insert(key); }
+
+		public boolean remove(Integer key) { return tree.remove(key); }
+	}
+
+	private static volatile long sink;//evita que o JIT descarte as leituras
+
+	public static void main(String[] args) throws InterruptedException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Math.max(16, Runtime.getRuntime().availableProcessors());
+		long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+		int order = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+		int readPercent = args.length > 4 ? Integer.parseInt(args[4]) : 90;
+
+		//chaves pares ficam na arvore; as escritas inserem e removem chaves de 0 a 2n
+		Integer[] keys = new Integer[2 * n];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+
+		System.out.println("chaves: " + n + ", ordem: " + order + ", processadores: "
+				+ Runtime.getRuntime().availableProcessors() + ", " + readPercent + "% buscas");
+		//uma rodada descartada de cada versao, para o JIT compilar o codigo antes das medidas
+		run(new SynchronizedTarget(order), keys, 2, millis, readPercent);
+		run(new LatchTarget(order), keys, 2, millis, readPercent);
+		System.out.printf("%8s %16s %16s%n", "threads", "synchronized op/s", "latches op/s");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double synced = run(new SynchronizedTarget(order), keys, threads, millis, readPercent);
+			double latched = run(new LatchTarget(order), keys, threads, millis, readPercent);
+			System.out.printf("%8d %16.0f %16.0f%n", threads, synced, latched);
+		}
+	}
+
+	//enche a arvore, roda as threads por um tempo fixo e retorna as operacoes por segundo
+	private static double run(final Target target, final Integer[] keys, int threads, final long millis,
+			final int readPercent) throws InterruptedException {
+		for (int i = 0; i < keys.length; i += 2) {
+			target.insert(keys[i]);
+		}
+		final AtomicLong operations = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					long done = 0;
+					long found = 0;
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					//confere o relogio a cada 256 operacoes para nao medir o nanoTime
+					while ((done & 255) != 0 || System.nanoTime() < deadline[0]) {
+						Integer key = keys[random.nextInt(keys.length)];
+						int op = random.nextInt(100);
+						if (op < readPercent) {
+							if (target.contains(key)) found++;
+						} else if (op % 2 == 0) {
+							if (target.insert(key)) found++;
+						} else {
+							if (target.remove(key)) found++;
+						}
+						done++;
+					}
+					operations.addAndGet(done);
+					sink += found;
+				}
+			});
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		deadline[0] = begin + millis * 1000000;
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		return operations.get() / seconds;
+	}
+}
@@ -0,0 +1,133 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import redBlackTree.ConcurrentRedBlackTree;
+import redBlackTree.RedBlackTree;
+
+//compara o RedBlackTree protegido por um synchronized global com o ConcurrentRedBlackTree (StampedLock com
+//leituras otimistas) em uma carga de 95% leituras (contains e rank) e 5% escritas (insercoes e remocoes)
+//com 1, 2, 4, ... threads ate o numero pedido
+//uso: java benchmark.ConcurrentTreeBenchmark [numero de chaves] [maximo de threads] [ms por medida]
+public class ConcurrentTreeBenchmark {
+	private static final int READ_PERCENT = 95;
+
+	//operacoes medidas, na mesma interface para as duas versoes
+	private interface Target {
+		boolean contains(Integer key);
+
+		int rank(Integer key);
+
+		void insert(Integer key);
+
+		boolean remove(Integer key);
+	}
+
+	//a forma de uso atual: um unico monitor em volta da arvore, leitores tambem se enfileiram
+	private static class SynchronizedTarget implements Target {
+		private final RedBlackTree<Integer> tree = new RedBlackTree<Integer>();
+
+		public synchronized boolean contains(Integer key) { return tree.search(key) != null; }
+
+		public synchronized int rank(Integer key) { return tree.rank(key); }
+
+		public synchronized void insert(Integer key) { tree.insert(key); }
+
+		public synchronized boolean remove(Integer key) { return tree.remove(key); }
+	}
+
+	private static class StampedTarget implements Target {
+		private final ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<Integer>();
+
+		public boolean contains(Integer key) { return tree.contains(key); }
+
+		public int rank(Integer key) { return tree.rank(key); }
+
+		public void insert(Integer key) { tree.insert(key); }
+
+		public boolean remove(Integer key) { return tree.remove(key); }
+	}
+
+	private static volatile long sink;//evita que o JIT descarte as leituras
+
+	public static void main(String[] args) throws InterruptedException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Math.max(16, Runtime.getRuntime().availableProcessors());
+		long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+		//chaves pares ficam na arvore; as escritas inserem e removem chaves de 0 a 2n
+		Integer[] keys = new Integer[2 * n];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+
+		System.out.println("chaves: " + n + ", processadores: " + Runtime.getRuntime().availableProcessors() + ", "
+				+ READ_PERCENT + "% leituras");
+		//uma rodada descartada de cada versao, para o JIT compilar o codigo antes das medidas
+		run(new SynchronizedTarget(), keys, 2, millis);
+		run(new StampedTarget(), keys, 2, millis);
+		System.out.printf("%8s %16s %16s%n", "threads", "synchronized op/s", "stamped op/s");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double synced = run(new SynchronizedTarget(), keys, threads, millis);
+			double stamped = run(new StampedTarget(), keys, threads, millis);
+			System.out.printf("%8d %16.0f %16.0f%n", threads, synced, stamped);
+		}
+	}
+
+	//enche a arvore, roda as threads por um tempo fixo e retorna as operacoes por segundo
+	private static double run(final Target target, final Integer[] keys, int threads, final long millis)
+			throws InterruptedException {
+		for (int i = 0; i < keys.length; i += 2) {
+			target.insert(keys[i]);
+		}
+		final AtomicLong operations = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					long done = 0;
+					long found = 0;
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					//confere o relogio a cada 256 operacoes para nao medir o nanoTime
+					while ((done & 255) != 0 || System.nanoTime() < deadline[0]) {
+						Integer key = keys[random.nextInt(keys.length)];
+						int op = random.nextInt(100);
+						if (op < READ_PERCENT - 10) {
+							if (target.contains(key)) found++;
+						} else if (op < READ_PERCENT) {
+							found += target.rank(key);
+						} else if (op % 2 == 0) {
+							target.insert(key);
+						} else {
+							target.remove(key);
+						}
+						done++;
+					}
+					operations.addAndGet(done);
+					sink += found;
+				}
+			});
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		deadline[0] = begin + millis * 1000000;
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		return operations.get() / seconds;
+	}
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import btree.BTree;
+import btree.LongBTree;
+
+//compara o LongBTree (keys em long[]) com o BTree<Long> no modo top-down, que tem o mesmo tamanho de no,
+//inserindo, buscando e removendo ids long aleatorios em varias ordens. Os ids ficam em um long[], como em
+//quem usa a arvore de verdade, entao o BTree<Long> paga o boxing de cada chamada. Tambem mede os bytes
+//alocados por insercao
+//uso: java benchmark.LongBTreeBenchmark [numero de chaves]
+public class LongBTreeBenchmark {
+	private static final int WARMUP_ROUNDS = 2;//rodadas descartadas para o JIT compilar o codigo
+	private static final int ROUNDS = 3;//rodadas medidas, e reportada a melhor
+	private static final int[] ORDERS = { 4, 8, 15, 31, 63, 127 };
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Random random = new Random(42);
+		long[] ids = new long[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = random.nextLong();
+		}
+
+		System.out.println("chaves: " + n);
+		System.out.printf("%6s %-8s %12s %12s %12s %10s%n", "ordem", "arvore", "insert ns/op", "search ns/op",
+				"remove ns/op", "B/insert");
+		for (int order : ORDERS) {
+			for (boolean primitive : new boolean[] { false, true }) {
+				long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+				for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+					long[] times = primitive ? runLong(order, ids) : runBoxed(order, ids);
+					if (round < WARMUP_ROUNDS) continue;
+					for (int i = 0; i < best.length; i++) {
+						best[i] = Math.min(best[i], times[i]);
+					}
+				}
+				System.out.printf("%6d %-8s %12.1f %12.1f %12.1f %10s%n", order, primitive ? "long" : "Long",
+						(double) best[0] / n, (double) best[1] / n, (double) best[2] / n,
+						ALLOCATION == null ? "n/d" : String.format("%.1f", (double) best[3] / n));
+			}
+		}
+	}
+
+	//tempo total, em nanossegundos, de insercao, busca e remocao, e os bytes alocados na insercao
+	private static long[] runLong(int order, long[] ids) {
+		LongBTree tree = new LongBTree(order);
+		long[] result = new long[4];
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for (long id : ids) {
+			tree.insert(id);
+		}
+		result[0] = System.nanoTime() - start;
+		result[3] = allocatedBytes() - allocated;
+
+		start = System.nanoTime();
+		int found = 0;
+		for (long id : ids) {
+			if (tree.contains(id)) found++;
+		}
+		result[1] = System.nanoTime() - start;
+		if (found != ids.length) throw new IllegalStateException("chaves perdidas na ordem " + order);
+
+		start = System.nanoTime();
+		for (long id : ids) {
+			tree.remove(id);
+		}
+		result[2] = System.nanoTime() - start;
+		if (tree.size() != 0) throw new IllegalStateException("arvore nao esvaziou na ordem " + order);
+		return result;
+	}
+
+	private static long[] runBoxed(int order, long[] ids) {
+		BTree<Long> tree = new BTree<Long>(order, true);
+		long[] result = new long[4];
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for (long id : ids) {
+			tree.insert(id);
+		}
+		result[0] = System.nanoTime() - start;
+		result[3] = allocatedBytes() - allocated;
+
+		start = System.nanoTime();
+		int found = 0;
+		for (long id : ids) {
+			if (tree.contains(id)) found++;
+		}
+		result[1] = System.nanoTime() - start;
+		if (found != ids.length) throw new IllegalStateException("chaves perdidas na ordem " + order);
+
+		start = System.nanoTime();
+		for (long id : ids) {
+			tree.remove(id);
+		}
+		result[2] = System.nanoTime() - start;
+		if (tree.size() != 0) throw new IllegalStateException("arvore nao esvaziou na ordem " + order);
+		return result;
+	}
+
+	//contador de alocacao por thread da HotSpot, ou null se a JVM nao o oferece
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+				return hotspot;
+		}
+		return null;
+	}
+
+	//bytes alocados ate agora pela thread atual, ou 0 se a JVM nao informa
+	private static long allocatedBytes() {
+		if (ALLOCATION == null) return 0;
+		return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
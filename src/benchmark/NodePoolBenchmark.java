@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import avlTree.AVLTree;
+import common.PoolStats;
+import redBlackTree.RedBlackTree;
+
+//mede o efeito do pool de nos em uma carga de rotatividade: a arvore fica com n chaves e cada passo remove
+//uma chave e insere outra. Compara AVLTree e RedBlackTree sem pool e com pool, reportando tempo, bytes
+//alocados e coletas de GC por passo e a taxa de acerto do pool
+//uso: java benchmark.NodePoolBenchmark [numero de chaves] [numero de passos]
+public class NodePoolBenchmark {
+	private static final int POOL_CAPACITY = 1024;
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+
+		//chaves da arvore em uma janela deslizante: o passo i remove a chave i e insere a chave n + i,
+		//tudo ja convertido para Integer antes da medida
+		Integer[] keys = new Integer[n + steps];
+		Random random = new Random(42);
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt();
+		}
+
+		System.out.println("chaves: " + n + ", passos: " + steps);
+		System.out.printf("%-6s %6s %10s %10s %12s  %s%n", "arvore", "pool", "ns/passo", "B/passo", "GCs/1M passos",
+				"estatisticas");
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;//a primeira rodada so aquece o JIT
+			for (int capacity : new int[] { 0, POOL_CAPACITY }) {
+				AVLTree<Integer> avl = new AVLTree<Integer>(capacity);
+				for (int i = 0; i < n; i++) {
+					avl.insert(keys[i]);
+				}
+				long[] result = measure(null, avl, keys, n, steps);
+				if (print) report("avl", capacity, result, steps, avl.poolStats());
+
+				RedBlackTree<Integer> rb = new RedBlackTree<Integer>(false, capacity);
+				for (int i = 0; i < n; i++) {
+					rb.insert(keys[i]);
+				}
+				result = measure(rb, null, keys, n, steps);
+				if (print) report("rb", capacity, result, steps, rb.poolStats());
+			}
+		}
+	}
+
+	//roda os passos e retorna tempo, bytes alocados e numero de coletas
+	private static long[] measure(RedBlackTree<Integer> rb, AVLTree<Integer> avl, Integer[] keys, int n, int steps) {
+		long allocated = allocatedBytes();
+		long collections = collections();
+		long start = System.nanoTime();
+		for (int i = 0; i < steps; i++) {
+			if (rb != null) {
+				rb.remove(keys[i]);
+				rb.insert(keys[n + i]);
+			} else {
+				avl.remove(keys[i]);
+				avl.insert(keys[n + i]);
+			}
+		}
+		long time = System.nanoTime() - start;
+		return new long[] { time, allocatedBytes() - allocated, collections() - collections };
+	}
+
+	private static void report(String tree, int capacity, long[] result, int steps, PoolStats stats) {
+		System.out.printf("%-6s %6d %10.1f %10s %12.1f  %s%n", tree, capacity, (double) result[0] / steps,
+				ALLOCATION == null ? "n/d" : String.format("%.1f", (double) result[1] / steps),
+				result[2] * 1000000.0 / steps, stats);
+	}
+
+	//contador de alocacao por thread da HotSpot, ou null se a JVM nao o oferece
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+				return hotspot;
+		}
+		return null;
+	}
+
+	//bytes alocados ate agora pela thread atual, ou 0 se a JVM nao informa
+	private static long allocatedBytes() {
+		if (ALLOCATION == null) return 0;
+		return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	//numero de coletas feitas por todos os coletores
+	private static long collections() {
+		long total = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, bean.getCollectionCount());
+		}
+		return total;
+	}
+}
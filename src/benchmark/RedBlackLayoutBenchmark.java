@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.util.Random;
+
+import common.TraversalOrder;
+import redBlackTree.ArrayRedBlackTree;
+import redBlackTree.RedBlackTree;
+
+//compara o RedBlackTree (um objeto por no) com o ArrayRedBlackTree (vetores paralelos): memoria por chave,
+//medida pelo heap usado depois de montar a arvore, e tempo de busca e de percurso em ordem.
+//As chaves Integer sao criadas antes e compartilhadas, entao a memoria medida e so a da estrutura da arvore
+//uso: java benchmark.RedBlackLayoutBenchmark [numero de chaves]
+public class RedBlackLayoutBenchmark {
+	private static final int ROUNDS = 5;//rodadas de busca; e reportada a melhor
+
+	private static volatile Object keep;//mantem a arvore viva enquanto o heap e medido
+	private static volatile long sink;//evita que o JIT descarte as buscas
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		Random random = new Random(42);
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = random.nextInt();
+		}
+		Integer[] queries = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			queries[i] = keys[random.nextInt(n)];
+		}
+
+		System.out.println("chaves: " + n);
+		System.out.printf("%-10s %10s %14s %14s%n", "arvore", "bytes/no", "search ns/op", "traverse ns/op");
+
+		long before = usedHeap();
+		RedBlackTree<Integer> objects = new RedBlackTree<Integer>();
+		for (Integer key : keys) {
+			objects.insert(key);
+		}
+		keep = objects;
+		long objectBytes = usedHeap() - before;
+		long[] objectTimes = measure(n, queries, objects, null);
+		keep = null;
+		objects = null;
+
+		before = usedHeap();
+		ArrayRedBlackTree<Integer> arrays = new ArrayRedBlackTree<Integer>();
+		for (Integer key : keys) {
+			arrays.insert(key);
+		}
+		keep = arrays;
+		long arrayBytes = usedHeap() - before;
+		long[] arrayTimes = measure(n, queries, null, arrays);
+
+		System.out.printf("%-10s %10.1f %14.1f %14.1f%n", "objetos", (double) objectBytes / n,
+				(double) objectTimes[0] / n, (double) objectTimes[1] / n);
+		System.out.printf("%-10s %10.1f %14.1f %14.1f%n", "vetores", (double) arrayBytes / n,
+				(double) arrayTimes[0] / n, (double) arrayTimes[1] / n);
+	}
+
+	//melhor tempo total, em nanossegundos, de buscar todas as consultas e de percorrer a arvore em ordem
+	private static long[] measure(int n, Integer[] queries, RedBlackTree<Integer> objects,
+			ArrayRedBlackTree<Integer> arrays) {
+		long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			int found = 0;
+			for (Integer key : queries) {
+				if (objects != null ? objects.search(key) != null : arrays.contains(key)) found++;
+			}
+			best[0] = Math.min(best[0], System.nanoTime() - start);
+
+			start = System.nanoTime();
+			long sum = 0;
+			Iterable<Integer> inOrder = objects != null ? objects.traverse(TraversalOrder.IN)
+					: arrays.traverse(TraversalOrder.IN);
+			for (Integer key : inOrder) {
+				sum += key;
+			}
+			best[1] = Math.min(best[1], System.nanoTime() - start);
+			if (found != n) throw new IllegalStateException("chaves perdidas");
+			sink += sum;
+		}
+		return best;
+	}
+
+	//heap ocupado depois de pedir algumas coletas
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,342 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import avlTree.AVLTree;
+import btree.BTree;
+import common.TraversalOrder;
+import redBlackTree.RedBlackTree;
+
+//compara AVLTree, RedBlackTree e BTree (em varias ordens) com cargas sequencial, aleatoria, Zipf e mista.
+//Para cada arvore, carga e tamanho mede insercao, busca, remocao e percurso em ns/op, alem dos bytes
+//alocados por operacao e do tempo gasto em GC durante as rodadas medidas.
+//uso: java benchmark.TreeBenchmark [tamanho maximo] [ordens da arvore B separadas por virgula]
+//os tamanhos vao de 10^3 ate o maximo (padrao 10^6), multiplicando por 10
+public class TreeBenchmark {
+	private static final int WARMUP_ROUNDS = 2;//rodadas descartadas para o JIT compilar o codigo
+	private static final int ROUNDS = 3;//rodadas medidas, e reportado o melhor tempo de cada fase
+	private static final int MIN_OPS = 1000000;//tamanhos pequenos repetem a rodada ate somar isso de operacoes
+	private static final double ZIPF_SKEW = 0.99;//expoente da distribuicao de Zipf (o do YCSB)
+	private static final int MIX_WRITE_PERCENT = 10;//porcentagem de escritas na carga mista
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	private static volatile long sink;//evita que o JIT descarte buscas e percursos cujo resultado nao e usado
+
+	//formas de gerar as chaves
+	enum Workload {
+		SEQUENTIAL, //insere, busca e remove as chaves em ordem crescente
+		RANDOM, //insere, busca e remove as chaves em ordem aleatoria
+		ZIPF, //insere em ordem aleatoria e busca poucas chaves quentes com frequencia de Zipf
+		MIXED //insere em ordem aleatoria e mede buscas Zipf misturadas com insercoes e remocoes
+	}
+
+	//operacoes medidas, na mesma interface para as tres arvores
+	private static abstract class Engine {
+		final String name;
+
+		Engine(String name) {
+			this.name = name;
+		}
+
+		abstract void insert(Integer key);
+
+		abstract boolean contains(Integer key);
+
+		abstract void remove(Integer key);
+
+		abstract Iterable<Integer> inOrder();
+
+		abstract void reset();//comeca uma arvore vazia
+	}
+
+	private static class AvlEngine extends Engine {
+		private AVLTree<Integer> tree;
+
+		AvlEngine() {
+			super("avl");
+		}
+
+		void insert(Integer key) { tree.insert(key); }
+
+		boolean contains(Integer key) { return tree.contains(key); }
+
+		void remove(Integer key) { tree.remove(key); }
+
+		Iterable<Integer> inOrder() { return tree.traverse(TraversalOrder.IN); }
+
+		void reset() { tree = new AVLTree<Integer>(); }
+	}
+
+	private static class RbEngine extends Engine {
+		private RedBlackTree<Integer> tree;
+
+		RbEngine() {
+			super("rb");
+		}
+
+		void insert(Integer key) { tree.insert(key); }
+
+		boolean contains(Integer key) { return tree.search(key) != null; }
+
+		void remove(Integer key) { tree.remove(tree.search(key)); }
+
+		Iterable<Integer> inOrder() { return tree.traverse(TraversalOrder.IN); }
+
+		void reset() { tree = new RedBlackTree<Integer>(); }
+	}
+
+	private static class BTreeEngine extends Engine {
+		private final int order;
+		private BTree<Integer> tree;
+
+		BTreeEngine(int order) {
+			super("bt" + order);
+			this.order = order;
+		}
+
+		void insert(Integer key) { tree.insert(key); }
+
+		boolean contains(Integer key) { return tree.contains(key); }
+
+		void remove(Integer key) { tree.remove(key); }
+
+		Iterable<Integer> inOrder() { return tree.traverse(TraversalOrder.IN); }
+
+		void reset() { tree = new BTree<Integer>(order); }
+	}
+
+	//chaves ja convertidas para Integer, para o boxing nao entrar na medida
+	private static class Keys {
+		Integer[] load;//ordem de insercao
+		Integer[] reads;//ordem das buscas
+		Integer[] removals;//ordem de remocao
+		Integer[] fresh;//chaves fora da arvore, usadas nas escritas da carga mista
+		boolean[] writes;//na carga mista, quais operacoes sao escritas
+	}
+
+	public static void main(String[] args) {
+		int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int[] orders = { 2, 8, 32, 128, 512 };
+		if (args.length > 1) {
+			String[] parts = args[1].split(",");
+			orders = new int[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				orders[i] = Integer.parseInt(parts[i].trim());
+			}
+		}
+
+		List<Engine> engines = new ArrayList<Engine>();
+		engines.add(new AvlEngine());
+		engines.add(new RbEngine());
+		for (int order : orders) {
+			engines.add(new BTreeEngine(order));
+		}
+
+		System.out.println("na carga MIXED a coluna search/mix mede " + (100 - MIX_WRITE_PERCENT) + "% buscas Zipf e "
+				+ MIX_WRITE_PERCENT + "% insercoes/remocoes");
+		System.out.printf("%-10s %-6s %9s %12s %12s %12s %14s %10s %8s%n", "carga", "arvore", "n", "insert ns/op",
+				"search/mix", "remove ns/op", "traverse ns/op", "B/op", "gc ms");
+		for (int n = 1000; n <= maxSize; n *= 10) {
+			for (Workload workload : Workload.values()) {
+				Keys keys = generate(workload, n, new Random(42));
+				for (Engine engine : engines) {
+					report(workload, n, engine, keys);
+				}
+			}
+		}
+	}
+
+	//roda as rodadas de uma combinacao e imprime a linha da tabela
+	private static void report(Workload workload, int n, Engine engine, Keys keys) {
+		int repeat = Math.max(1, MIN_OPS / n);
+		long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+		long allocated = 0;
+		long gcMillis = 0;
+		long operations = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			boolean measured = round >= WARMUP_ROUNDS;
+			long allocatedBefore = allocatedBytes();
+			long gcBefore = gcMillis();
+			long[] times = new long[4];
+			for (int r = 0; r < repeat; r++) {
+				long[] once = run(workload, engine, keys);
+				for (int i = 0; i < times.length; i++) {
+					times[i] += once[i];
+				}
+			}
+			if (!measured) continue;
+			allocated += allocatedBytes() - allocatedBefore;
+			gcMillis += gcMillis() - gcBefore;
+			operations += 4L * n * repeat;
+			for (int i = 0; i < best.length; i++) {
+				best[i] = Math.min(best[i], times[i]);
+			}
+		}
+		double ops = (double) n * repeat;
+		System.out.printf("%-10s %-6s %9d %12.1f %12.1f %12.1f %14.1f %10s %8d%n", workload, engine.name, n,
+				best[0] / ops, best[1] / ops, best[2] / ops, best[3] / ops,
+				ALLOCATION == null ? "n/d" : String.format("%.1f", (double) allocated / operations), gcMillis);
+	}
+
+	//executa uma vez as quatro fases e retorna o tempo total, em nanossegundos, de cada uma
+	private static long[] run(Workload workload, Engine engine, Keys keys) {
+		long[] times = new long[4];
+		engine.reset();
+
+		long start = System.nanoTime();
+		for (Integer key : keys.load) {
+			engine.insert(key);
+		}
+		times[0] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int found = 0;
+		if (workload == Workload.MIXED) {
+			//cada escrita insere uma chave nova ou remove a que foi inserida na escrita anterior
+			int fresh = 0;
+			boolean pending = false;
+			for (int i = 0; i < keys.reads.length; i++) {
+				if (!keys.writes[i]) {
+					if (engine.contains(keys.reads[i])) found++;
+				} else if (pending) {
+					engine.remove(keys.fresh[fresh++]);
+					pending = false;
+				} else {
+					engine.insert(keys.fresh[fresh]);
+					pending = true;
+				}
+			}
+			if (pending) engine.remove(keys.fresh[fresh]);
+		} else {
+			for (Integer key : keys.reads) {
+				if (engine.contains(key)) found++;
+			}
+			if (found != keys.reads.length)
+				throw new IllegalStateException("chaves perdidas em " + engine.name + " " + workload);
+		}
+		times[1] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long sum = 0;
+		for (Integer key : engine.inOrder()) {
+			sum += key;
+		}
+		times[3] = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (Integer key : keys.removals) {
+			engine.remove(key);
+		}
+		times[2] = System.nanoTime() - start;
+
+		sink += found + sum;
+		return times;
+	}
+
+	//gera as sequencias de chaves da carga; as chaves da arvore sao os pares de 0 a 2n-2, e os impares
+	//ficam para as escritas da carga mista
+	private static Keys generate(Workload workload, int n, Random random) {
+		Keys keys = new Keys();
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = 2 * i;
+		}
+		Integer[] shuffled = shuffle(sorted.clone(), random);
+
+		if (workload == Workload.SEQUENTIAL) {
+			keys.load = sorted;
+			keys.reads = sorted;
+			keys.removals = sorted;
+			return keys;
+		}
+		keys.load = shuffled;
+		keys.removals = shuffle(sorted.clone(), random);
+		if (workload == Workload.RANDOM) {
+			keys.reads = shuffle(sorted.clone(), random);
+			return keys;
+		}
+
+		//o rank de Zipf e mapeado para a ordem embaralhada, assim as chaves quentes ficam espalhadas pela arvore
+		double[] cumulative = zipfCumulative(n);
+		keys.reads = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys.reads[i] = shuffled[zipfRank(cumulative, random.nextDouble())];
+		}
+		if (workload == Workload.MIXED) {
+			keys.writes = new boolean[n];
+			keys.fresh = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				keys.writes[i] = random.nextInt(100) < MIX_WRITE_PERCENT;
+				keys.fresh[i] = 2 * random.nextInt(n) + 1;
+			}
+		}
+		return keys;
+	}
+
+	private static Integer[] shuffle(Integer[] array, Random random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Integer aux = array[i];
+			array[i] = array[j];
+			array[j] = aux;
+		}
+		return array;
+	}
+
+	//distribuicao acumulada de Zipf: a probabilidade do rank k e proporcional a 1/(k+1)^ZIPF_SKEW
+	private static double[] zipfCumulative(int n) {
+		double[] cumulative = new double[n];
+		double total = 0;
+		for (int k = 0; k < n; k++) {
+			total += 1.0 / Math.pow(k + 1, ZIPF_SKEW);
+			cumulative[k] = total;
+		}
+		for (int k = 0; k < n; k++) {
+			cumulative[k] /= total;
+		}
+		return cumulative;
+	}
+
+	//busca binaria do primeiro rank cuja probabilidade acumulada passa de u
+	private static int zipfRank(double[] cumulative, double u) {
+		int low = 0;
+		int high = cumulative.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulative[mid] < u) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	//contador de alocacao por thread da HotSpot, ou null se a JVM nao o oferece
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+				return hotspot;
+		}
+		return null;
+	}
+
+	//bytes alocados ate agora pela thread atual, ou 0 se a JVM nao informa
+	private static long allocatedBytes() {
+		if (ALLOCATION == null) return 0;
+		return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	//tempo acumulado de GC de todos os coletores
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, bean.getCollectionTime());
+		}
+		return total;
+	}
+}
@@ -1,18 +1,14 @@
 package btree;
 import java.util.*;
 
+import common.TreeCounters;
+
 public class BNode<T extends Comparable<T>> {//extende um tipo generico
 
 		private T[] keys = null;//vetor de chaves do no
 		private int keysSize = 0;//tamanho do vetor de chaves
 		private BNode<T>[] children = null;//vetor de filhos
 		private int childrenSize = 0;//tamanho do vetor de filhos
-		protected Comparator<BNode<T>> comparator = new Comparator<BNode<T>>() {//comparador para tipos genericos
-			@Override
-			public int compare(BNode<T> arg0, BNode<T> arg1) {//metodo sobreescrito de comparao
-				return arg0.getKey(0).compareTo(arg1.getKey(0));
-			}
-		};
 		//getters e setters
 		protected T[] getKeys() {
 			return keys;
@@ -46,27 +42,10 @@ public class BNode<T extends Comparable<T>> {//extende um tipo generico
 			this.childrenSize = childrenSize;
 		}
 
-		protected Comparator<BNode<T>> getComparator() {
-			return comparator;
-		}
-
-		protected void setComparator(Comparator<BNode<T>> comparator) {
-			this.comparator = comparator;
-		}
-
-		protected BNode<T> getParent() {
-			return parent;
-		}
-
-		protected void setParent(BNode<T> parent) {
-			this.parent = parent;
-		}
 		//fim dos getters e setters padrao
-		protected BNode<T> parent = null;//referencia pro no pai
 
 		@SuppressWarnings("unchecked")//suprime warnings por causa de cast para tipo generico
-		protected BNode(BNode<T> parent, int maxKeySize, int maxChildrenSize) {//construtor do bnode
-			this.parent = parent;
+		protected BNode(int maxKeySize, int maxChildrenSize) {//construtor do bnode
 			this.keys = (T[]) new Comparable[maxKeySize + 1];
 			this.keysSize = 0;
 			this.children = new BNode[maxChildrenSize + 1];
@@ -77,46 +56,68 @@ public class BNode<T extends Comparable<T>> {//extende um tipo generico
 			return keys[index];
 		}
 
-		protected int indexOf(T value) {//retorna o index de tal key se ela estiver no no
-			for (int i = 0; i < keysSize; i++) {
-				if (keys[i].equals(value)) return i;
+		protected int lowerBound(T value) {//busca binaria: primeiro index cuja key e maior ou igual ao valor
+			return lowerBound(value, null);
+		}
+
+		protected int lowerBound(T value, TreeCounters counters) {//a mesma busca, somando as comparacoes nos contadores
+			int low = 0;
+			int high = keysSize;
+			int comparisons = 0;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				comparisons++;
+				if (keys[mid].compareTo(value) < 0) low = mid + 1;
+				else high = mid;
 			}
+			if (TreeCounters.ENABLED && counters != null) counters.comparisons(comparisons);
+			return low;
+		}
+
+		protected int indexOf(T value) {//retorna o index de tal key se ela estiver no no
+			int index = lowerBound(value);
+			if (index < keysSize && keys[index].compareTo(value) == 0) return index;
 			return -1;
 		}
 
-		protected void addKey(T value) {//adiciona uma key no vetor de keys do no
+		protected void addKey(T value) {//adiciona uma key no vetor de keys do no, ja na posicao ordenada
+			int index = lowerBound(value);
+			System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+			keys[index] = value;
+			keysSize++;
+		}
+
+		protected void addKey(int index, T value) {//adiciona uma key no index informado, quem chama garante a ordem
+			System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+			keys[index] = value;
+			keysSize++;
+		}
+
+		protected void setKey(int index, T value) {//troca a key em um index
+			keys[index] = value;
+		}
+
+		protected void appendKey(T value) {//adiciona uma key no final, quem chama garante que ela e a maior
 			keys[keysSize++] = value;
-			Arrays.sort(keys, 0, keysSize);
 		}
 
-		
+		protected void appendKeys(BNode<T> source, int from, int to) {//copia as keys [from, to) de outro no pro final deste
+			System.arraycopy(source.keys, from, keys, keysSize, to - from);
+			keysSize += to - from;
+		}
+
 		protected T removeKey(T value) {//remove uma key do vetor de keys do no
-			T removed = null;
-			boolean found = false;
-			if (keysSize == 0) return null;
-			for (int i = 0; i < keysSize; i++) {
-				if (keys[i].equals(value)) {
-					found = true;
-					removed = keys[i];
-				} else if (found) {
-					// move o resto delas pra baixo
-					keys[i - 1] = keys[i];
-				}
-			}
-			if (found) {
-				keysSize--;
-				keys[keysSize] = null;
-			}
-			return removed;
+			int index = indexOf(value);
+			if (index < 0) return null;
+			return removeKey(index);
 		}
 
 		protected T removeKey(int index) {//remove uma key de acordo com o index dela
 			if (index >= keysSize)
 				return null;
 			T value = keys[index];
-			for (int i = index + 1; i < keysSize; i++) {
-				keys[i - 1] = keys[i];
-			}
+			// move o resto delas pra baixo
+			System.arraycopy(keys, index + 1, keys, index, keysSize - index - 1);
 			keysSize--;
 			keys[keysSize] = null;
 			return value;
@@ -136,48 +137,33 @@ public class BNode<T extends Comparable<T>> {//extende um tipo generico
 			return children[index];
 		}
 
-		protected int indexOf(BNode<T> child) {//o index daquele filho
-			for (int i = 0; i < childrenSize; i++) {
-				if (children[i].equals(child))
-					return i;
-			}
-			return -1;
+		protected boolean addChild(int index, BNode<T> child) {//adiciona o filho no index informado
+			System.arraycopy(children, index, children, index + 1, childrenSize - index);
+			children[index] = child;
+			childrenSize++;
+			return true;
 		}
 
-		protected boolean addChild(BNode<T> child) {
-			child.parent = this;
-			children[childrenSize++] = child;
-			Arrays.sort(children, 0, childrenSize, comparator);
-			return true;
+		protected void appendChildren(BNode<T> source, int from, int to) {//move os filhos [from, to) de outro no pro final deste
+			System.arraycopy(source.children, from, children, childrenSize, to - from);
+			childrenSize += to - from;
 		}
 
-		protected boolean removeChild(BNode<T> child) {//remove o filho solicitado
-			boolean found = false;
-			if (childrenSize == 0)
-				return found;
-			for (int i = 0; i < childrenSize; i++) {
-				if (children[i].equals(child)) {
-					found = true;
-				} else if (found) {
-					// muda o resto dos filhos uma chave abaixo
-					children[i - 1] = children[i];
-				}
+		protected void truncate(int newKeysSize, int newChildrenSize) {//descarta as keys e filhos a partir desses tamanhos
+			Arrays.fill(keys, newKeysSize, keysSize, null);
+			keysSize = newKeysSize;
+			if (newChildrenSize < childrenSize) {
+				Arrays.fill(children, newChildrenSize, childrenSize, null);
+				childrenSize = newChildrenSize;
 			}
-			if (found) {
-				childrenSize--;
-				children[childrenSize] = null;
-			}
-			return found;
 		}
 
 		protected BNode<T> removeChild(int index) {//remove o filho em tal index
 			if (index >= childrenSize)
 				return null;
 			BNode<T> value = children[index];
-			children[index] = null;
-			for (int i = index + 1; i < childrenSize; i++) {
-				children[i - 1] = children[i];
-			}
+			// muda o resto dos filhos um index abaixo
+			System.arraycopy(children, index + 1, children, index, childrenSize - index - 1);
 			childrenSize--;
 			children[childrenSize] = null;
 			return value;
@@ -0,0 +1,120 @@
+package btree;
+
+import java.util.Arrays;
+
+//no do BPlusTree. As folhas guardam as keys e apontam para a proxima folha; os nos internos so guardam
+//keys separadoras: o filho i tem as keys maiores ou iguais a key i-1 e menores que a key i
+class BPlusNode<T extends Comparable<T>> {
+
+	private final T[] keys;//vetor de chaves do no
+	private int keysSize = 0;//tamanho do vetor de chaves
+	private final BPlusNode<T>[] children;//vetor de filhos, null nas folhas
+	private int childrenSize = 0;//tamanho do vetor de filhos
+	private BPlusNode<T> next = null;//proxima folha, em ordem
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	BPlusNode(boolean leaf, int maxKeySize, int maxChildrenSize) {
+		this.keys = (T[]) new Comparable[maxKeySize + 1];
+		this.children = leaf ? null : new BPlusNode[maxChildrenSize + 1];
+	}
+
+	boolean isLeaf() {
+		return children == null;
+	}
+
+	BPlusNode<T> getNext() {
+		return next;
+	}
+
+	void setNext(BPlusNode<T> next) {
+		this.next = next;
+	}
+
+	int numberOfKeys() {//retorna o numero de chaves do no
+		return keysSize;
+	}
+
+	int numberOfChildren() {//retorna o numero de filhos
+		return childrenSize;
+	}
+
+	T getKey(int index) {//retorna a key em um index no vetor de chave
+		return keys[index];
+	}
+
+	void setKey(int index, T value) {//troca a key em um index
+		keys[index] = value;
+	}
+
+	BPlusNode<T> getChild(int index) {//retorna o filho naquele index
+		return children[index];
+	}
+
+	int lowerBound(T value) {//busca binaria: primeiro index cuja key e maior ou igual ao valor
+		int low = 0;
+		int high = keysSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(value) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	int upperBound(T value) {//busca binaria: primeiro index cuja key e maior que o valor
+		int low = 0;
+		int high = keysSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(value) <= 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	void addKey(int index, T value) {//adiciona uma key no index informado
+		System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+		keys[index] = value;
+		keysSize++;
+	}
+
+	T removeKey(int index) {//remove uma key de acordo com o index dela
+		T value = keys[index];
+		System.arraycopy(keys, index + 1, keys, index, keysSize - index - 1);
+		keys[--keysSize] = null;
+		return value;
+	}
+
+	void addChild(int index, BPlusNode<T> child) {//adiciona o filho no index informado
+		System.arraycopy(children, index, children, index + 1, childrenSize - index);
+		children[index] = child;
+		childrenSize++;
+	}
+
+	BPlusNode<T> removeChild(int index) {//remove o filho em tal index
+		BPlusNode<T> value = children[index];
+		System.arraycopy(children, index + 1, children, index, childrenSize - index - 1);
+		children[--childrenSize] = null;
+		return value;
+	}
+
+	void appendFrom(BPlusNode<T> source, int keyFrom, int childFrom) {//copia as keys e filhos finais de outro no pro final deste
+		int keyCount = source.keysSize - keyFrom;
+		System.arraycopy(source.keys, keyFrom, keys, keysSize, keyCount);
+		keysSize += keyCount;
+		if (!isLeaf()) {
+			int childCount = source.childrenSize - childFrom;
+			System.arraycopy(source.children, childFrom, children, childrenSize, childCount);
+			childrenSize += childCount;
+		}
+	}
+
+	void truncate(int newKeysSize, int newChildrenSize) {//descarta as keys e filhos a partir desses tamanhos
+		Arrays.fill(keys, newKeysSize, keysSize, null);
+		keysSize = newKeysSize;
+		if (!isLeaf()) {
+			Arrays.fill(children, newChildrenSize, childrenSize, null);
+			childrenSize = newChildrenSize;
+		}
+	}
+}
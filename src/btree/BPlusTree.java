@@ -0,0 +1,340 @@
+package btree;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//arvore B+: todas as keys ficam nas folhas, que sao ligadas em ordem. Uma busca por intervalo desce uma vez
+//ate a primeira folha e depois so anda pela lista de folhas, sem recursao e sem copiar a arvore.
+//A ordem tem o mesmo significado do BTree (minimo de keys por no). Chaves repetidas nao sao inseridas.
+public class BPlusTree<T extends Comparable<T>> implements Iterable<T> {
+
+	// no padrao de 2-3
+	private int minKeySize = 1;
+	private int minChildrenSize = minKeySize + 1;
+	private int maxKeySize = 2 * minKeySize;
+	private int maxChildrenSize = maxKeySize + 1;
+
+	private BPlusNode<T> root = null;
+	private int size = 0;
+	private int modCount = 0;//muda a cada alteracao, para os iteradores detectarem modificacao concorrente
+
+	//pilha do caminho da raiz ate a folha: o no e o index do filho por onde a descida seguiu
+	private final ArrayList<BPlusNode<T>> pathNodes = new ArrayList<BPlusNode<T>>();
+	private final ArrayList<Integer> pathIndexes = new ArrayList<Integer>();
+
+	//construtor padrao que seta a arvore pra 2-3
+	public BPlusTree() { }
+	//construtor que cria uma arvore de acordo com a ordem informada
+	public BPlusTree(int order) {
+		this.minKeySize = order;
+		this.minChildrenSize = minKeySize + 1;
+		this.maxKeySize = 2 * minKeySize;
+		this.maxChildrenSize = maxKeySize + 1;
+	}
+
+	//insere a key; retorna false se ela ja estava na arvore
+	public boolean insert(T value) {
+		if (root == null) {
+			root = new BPlusNode<T>(true, maxKeySize, maxChildrenSize);
+			root.addKey(0, value);
+			size++;
+			modCount++;
+			return true;
+		}
+		BPlusNode<T> node = descend(value);
+		int index = node.lowerBound(value);
+		if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) {
+			clearPath();
+			return false;
+		}
+		node.addKey(index, value);
+		// sobe pelo caminho separando os nos que passaram do maximo
+		while (node.numberOfKeys() > maxKeySize) {
+			node = split(node);
+		}
+		clearPath();
+		size++;
+		modCount++;
+		return true;
+	}
+
+	//separa o no em dois e retorna o pai, que recebeu a key separadora
+	private BPlusNode<T> split(BPlusNode<T> node) {
+		int medianIndex = node.numberOfKeys() / 2;
+		T separator = node.getKey(medianIndex);
+		BPlusNode<T> right = new BPlusNode<T>(node.isLeaf(), maxKeySize, maxChildrenSize);
+		if (node.isLeaf()) {
+			// na folha a key do meio continua na folha da direita e so uma copia sobe
+			right.appendFrom(node, medianIndex, 0);
+			node.truncate(medianIndex, 0);
+			right.setNext(node.getNext());
+			node.setNext(right);
+		} else {
+			right.appendFrom(node, medianIndex + 1, medianIndex + 1);
+			node.truncate(medianIndex, medianIndex + 1);
+		}
+
+		if (pathNodes.isEmpty()) {
+			// nova raiz, a altura da arvore aumentou
+			BPlusNode<T> newRoot = new BPlusNode<T>(false, maxKeySize, maxChildrenSize);
+			newRoot.addKey(0, separator);
+			newRoot.addChild(0, node);
+			newRoot.addChild(1, right);
+			root = newRoot;
+			return newRoot;
+		}
+		int index = pathIndexes.remove(pathIndexes.size() - 1);
+		BPlusNode<T> parent = pathNodes.remove(pathNodes.size() - 1);
+		parent.addKey(index, separator);
+		parent.addChild(index + 1, right);
+		return parent;
+	}
+
+	//remove a key informada e retorna ela, ou null se nao existir
+	public T remove(T value) {
+		if (root == null) return null;
+		BPlusNode<T> node = descend(value);
+		int index = node.lowerBound(value);
+		if (index == node.numberOfKeys() || node.getKey(index).compareTo(value) != 0) {
+			clearPath();
+			return null;
+		}
+		T removed = node.removeKey(index);
+		// sobe pelo caminho combinando os nos que ficaram abaixo do minimo
+		while (!pathNodes.isEmpty() && node.numberOfKeys() < minKeySize) {
+			node = combined(node);
+		}
+		clearPath();
+		if (root.numberOfKeys() == 0) {
+			// a raiz ficou vazia: a altura da arvore diminuiu
+			root = root.isLeaf() ? null : root.getChild(0);
+		}
+		size--;
+		modCount++;
+		return removed;
+	}
+
+	//pede emprestado ou combina o no com um vizinho e retorna o pai, que perdeu ou teve uma key trocada
+	private BPlusNode<T> combined(BPlusNode<T> node) {
+		int index = pathIndexes.remove(pathIndexes.size() - 1);
+		BPlusNode<T> parent = pathNodes.remove(pathNodes.size() - 1);
+		BPlusNode<T> leftNeighbor = index > 0 ? parent.getChild(index - 1) : null;
+		BPlusNode<T> rightNeighbor = index + 1 < parent.numberOfChildren() ? parent.getChild(index + 1) : null;
+
+		if (rightNeighbor != null && rightNeighbor.numberOfKeys() > minKeySize) {
+			// vizinho da direita
+			if (node.isLeaf()) {
+				node.addKey(node.numberOfKeys(), rightNeighbor.removeKey(0));
+				parent.setKey(index, rightNeighbor.getKey(0));
+			} else {
+				node.addKey(node.numberOfKeys(), parent.getKey(index));
+				parent.setKey(index, rightNeighbor.removeKey(0));
+				node.addChild(node.numberOfChildren(), rightNeighbor.removeChild(0));
+			}
+		} else if (leftNeighbor != null && leftNeighbor.numberOfKeys() > minKeySize) {
+			//vizinho da esquerda
+			if (node.isLeaf()) {
+				node.addKey(0, leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1));
+				parent.setKey(index - 1, node.getKey(0));
+			} else {
+				node.addKey(0, parent.getKey(index - 1));
+				parent.setKey(index - 1, leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1));
+				node.addChild(0, leftNeighbor.removeChild(leftNeighbor.numberOfChildren() - 1));
+			}
+		} else if (rightNeighbor != null) {
+			// nao pode pedir emprestado: junta com o vizinho da direita
+			merge(node, parent, index, rightNeighbor);
+		} else {
+			// junta com o vizinho da esquerda
+			merge(leftNeighbor, parent, index - 1, node);
+		}
+		return parent;
+	}
+
+	//junta right em left; separatorIndex e o index da key do pai que fica entre os dois
+	private void merge(BPlusNode<T> left, BPlusNode<T> parent, int separatorIndex, BPlusNode<T> right) {
+		T separator = parent.removeKey(separatorIndex);
+		parent.removeChild(separatorIndex + 1);
+		if (left.isLeaf()) {
+			left.appendFrom(right, 0, 0);
+			left.setNext(right.getNext());
+		} else {
+			left.addKey(left.numberOfKeys(), separator);
+			left.appendFrom(right, 0, 0);
+		}
+	}
+
+	//desce ate a folha onde a key esta ou estaria, guardando o caminho
+	private BPlusNode<T> descend(T value) {
+		BPlusNode<T> node = root;
+		while (!node.isLeaf()) {
+			int index = node.upperBound(value);
+			pathNodes.add(node);
+			pathIndexes.add(index);
+			node = node.getChild(index);
+		}
+		return node;
+	}
+
+	private void clearPath() {
+		pathNodes.clear();
+		pathIndexes.clear();
+	}
+
+	public boolean contains(T value) {//testa se essa key esta na arvore
+		BPlusNode<T> node = root;
+		if (node == null) return false;
+		while (!node.isLeaf()) {
+			node = node.getChild(node.upperBound(value));
+		}
+		int index = node.lowerBound(value);
+		return index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0;
+	}
+
+	//keys de from ate to, incluindo os extremos, em ordem. O iterador anda pelas folhas sem copiar nada
+	public Iterable<T> scan(final T from, final T to) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				if (root == null) return new LeafIterator(null, 0, to);
+				BPlusNode<T> node = root;
+				while (!node.isLeaf()) {
+					node = node.getChild(node.upperBound(from));
+				}
+				return new LeafIterator(node, node.lowerBound(from), to);
+			}
+		};
+	}
+
+	//todas as keys, em ordem
+	@Override
+	public Iterator<T> iterator() {
+		BPlusNode<T> node = root;
+		while (node != null && !node.isLeaf()) {
+			node = node.getChild(0);
+		}
+		return new LeafIterator(node, 0, null);
+	}
+
+	//anda pela lista de folhas a partir de uma posicao ate passar de to (ou ate o fim, se to for null)
+	private class LeafIterator implements Iterator<T> {
+		private BPlusNode<T> leaf;
+		private int index;
+		private final T to;
+		private final int expectedModCount = modCount;
+
+		LeafIterator(BPlusNode<T> leaf, int index, T to) {
+			this.leaf = leaf;
+			this.index = index;
+			this.to = to;
+			skipExhaustedLeaves();
+		}
+
+		private void skipExhaustedLeaves() {
+			while (leaf != null && index >= leaf.numberOfKeys()) {
+				leaf = leaf.getNext();
+				index = 0;
+			}
+			if (leaf != null && to != null && leaf.getKey(index).compareTo(to) > 0) {
+				leaf = null;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return leaf != null;
+		}
+
+		@Override
+		public T next() {
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			if (leaf == null) throw new NoSuchElementException();
+			T value = leaf.getKey(index++);
+			skipExhaustedLeaves();
+			return value;
+		}
+	}
+
+	public ArrayList<T> toArrayList(String type) {//as keys em ordem, como no BTree
+		if (root == null) return null;
+		if (!type.equals("IN")) {
+			System.err.println("You can only print B trees in order!");
+		}
+		ArrayList<T> ret = new ArrayList<T>(size);
+		for (T value : this) {
+			ret.add(value);
+		}
+		return ret;
+	}
+
+	public void clear() {//reseta a arvore
+		root = null;
+		size = 0;
+		modCount++;
+	}
+
+	//tamanho da arvore
+	public int size() {
+		return size;
+	}
+
+	//valida a arvore: limites de keys e filhos, keys dos filhos entre as separadoras do pai, todas as folhas
+	//na mesma profundidade e a lista de folhas com exatamente as keys da arvore, em ordem
+	public boolean validate() {
+		if (root == null) return size == 0;
+		ArrayList<BPlusNode<T>> leaves = new ArrayList<BPlusNode<T>>();
+		if (!validateNode(root, null, null, true, leaves)) return false;
+		for (int i = 0; i < leaves.size(); i++) {
+			BPlusNode<T> expectedNext = i + 1 < leaves.size() ? leaves.get(i + 1) : null;
+			if (leaves.get(i).getNext() != expectedNext) return false;
+		}
+		int count = 0;
+		T previous = null;
+		for (T value : this) {
+			if (previous != null && previous.compareTo(value) >= 0) return false;
+			previous = value;
+			count++;
+		}
+		return count == size;
+	}
+
+	private boolean validateNode(BPlusNode<T> node, T low, T high, boolean isRoot, ArrayList<BPlusNode<T>> leaves) {
+		int keySize = node.numberOfKeys();
+		if (keySize > maxKeySize) return false;
+		if (!isRoot && keySize < minKeySize) return false;
+		for (int i = 0; i < keySize; i++) {
+			T key = node.getKey(i);
+			if (i > 0 && node.getKey(i - 1).compareTo(key) >= 0) return false;
+			if (low != null && key.compareTo(low) < 0) return false;
+			if (high != null && key.compareTo(high) >= 0) return false;
+		}
+		if (node.isLeaf()) {
+			leaves.add(node);
+			return true;
+		}
+		if (node.numberOfChildren() != keySize + 1) return false;
+		if (!isRoot && node.numberOfChildren() < minChildrenSize) return false;
+		// todos os filhos tem que ter a mesma altura
+		int depth = -1;
+		for (int i = 0; i <= keySize; i++) {
+			T childLow = i == 0 ? low : node.getKey(i - 1);
+			T childHigh = i == keySize ? high : node.getKey(i);
+			if (!validateNode(node.getChild(i), childLow, childHigh, false, leaves)) return false;
+			int childDepth = depthOf(node.getChild(i));
+			if (depth >= 0 && childDepth != depth) return false;
+			depth = childDepth;
+		}
+		return true;
+	}
+
+	private int depthOf(BPlusNode<T> node) {//numero de niveis ate a folha mais a esquerda
+		int depth = 0;
+		while (!node.isLeaf()) {
+			node = node.getChild(0);
+			depth++;
+		}
+		return depth;
+	}
+}
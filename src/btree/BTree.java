@@ -5,8 +5,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import avlTree.AVLNode;
+import common.TraversalOrder;
+import common.TreeCounters;
+import common.TreeOperationEvent;
 import btree.BNode;
 
 @SuppressWarnings("unchecked")//suprime warnings de casting
@@ -20,155 +29,317 @@ public class BTree<T extends Comparable<T>>{
 
 	private BNode<T> root = null;
 	private int size = 0;
+	private boolean topDown = false;//insercao e remocao em uma descida so, sem voltar pelo caminho
+
+	//pilha do caminho da raiz ate o no atual: o no e o index do filho por onde a descida seguiu.
+	//Substitui o ponteiro pro pai no modo normal, em que split e combined sobem pelo caminho
+	private final ArrayList<BNode<T>> pathNodes = new ArrayList<BNode<T>>();
+	private int[] pathIndexes = new int[16];
+	//splits, combined e comparacoes, contados so com TreeCounters.ENABLED
+	private final TreeCounters counters = new TreeCounters();
+	//splits e combined feitos ate agora e nos visitados pela ultima insercao ou remocao, para o TreeOperationEvent
+	private int restructurings = 0;
+	private int depth = 0;
 
 	//construtor padrao que seta a arvore pra 2-3
 	public BTree() { }
 	//construtor que cria uma arvore de acordo com a ordem informada
 	public BTree(int order) {
+		this(order, false);
+	}
+	//no modo top-down a insercao divide todo no cheio que encontra na descida e a remocao completa todo no
+	//com o minimo de keys, entao as duas terminam na folha sem subir de volta. Para um no cheio poder ser
+	//dividido em dois nos validos antes de receber a key, o maximo passa a ser 2*order+1 keys
+	public BTree(int order, boolean topDown) {
+		this.topDown = topDown;
 		this.minKeySize = order;
 		this.minChildrenSize = minKeySize + 1;
-		this.maxKeySize = 2 * minKeySize;
+		this.maxKeySize = 2 * minKeySize + (topDown ? 1 : 0);
 		this.maxChildrenSize = maxKeySize + 1;
 	}
+
+	public boolean isTopDown() {
+		return topDown;
+	}
+
+	public int order() {//minimo de keys por no, fora a raiz
+		return minKeySize;
+	}
 	
+	//cria uma arvore 2-3 a partir de keys em ordem crescente, com as folhas completamente cheias
+	public static <T extends Comparable<T>> BTree<T> bulkLoad(Iterator<T> sorted) {
+		return bulkLoad(sorted, 1, 1.0);
+	}
+
+	//cria uma arvore da ordem informada a partir de keys em ordem crescente, em tempo linear e de baixo pra cima.
+	//fillFactor (entre 0 e 1) diz o quanto cada no deve ficar cheio, sempre respeitando o minimo e o maximo de keys
+	public static <T extends Comparable<T>> BTree<T> bulkLoad(Iterator<T> sorted, int order, double fillFactor) {
+		if (fillFactor <= 0 || fillFactor > 1)
+			throw new IllegalArgumentException("fillFactor deve estar entre 0 e 1");
+		ArrayList<T> keys = new ArrayList<T>();
+		while (sorted.hasNext()) {
+			T value = sorted.next();
+			if (!keys.isEmpty() && keys.get(keys.size() - 1).compareTo(value) > 0)
+				throw new IllegalArgumentException("as keys nao estao em ordem: " + value);
+			keys.add(value);
+		}
+
+		BTree<T> tree = new BTree<T>(order);
+		if (keys.isEmpty()) return tree;
+		//numero de filhos que cada no deve ter de acordo com o fillFactor
+		int targetChildren = Math.max(tree.minChildrenSize,
+				Math.min(tree.maxChildrenSize, (int) Math.round(fillFactor * tree.maxKeySize) + 1));
+
+		// folhas: n keys viram m folhas e m-1 separadores que sobem pro nivel de cima
+		int leafCount = tree.groupCount(keys.size() + 1, targetChildren);
+		ArrayList<BNode<T>> level = new ArrayList<BNode<T>>(leafCount);
+		ArrayList<T> separators = new ArrayList<T>(leafCount);
+		int next = 0;
+		for (int i = 0; i < leafCount; i++) {
+			BNode<T> leaf = new BNode<T>(tree.maxKeySize, tree.maxChildrenSize);
+			int keysInLeaf = groupSize(keys.size() + 1, leafCount, i) - 1;
+			for (int j = 0; j < keysInLeaf; j++) {
+				leaf.appendKey(keys.get(next++));
+			}
+			if (i < leafCount - 1) separators.add(keys.get(next++));
+			level.add(leaf);
+		}
+
+		// niveis internos: cada pai recebe um grupo de filhos e os separadores entre eles
+		while (level.size() > 1) {
+			int parentCount = tree.groupCount(level.size(), targetChildren);
+			ArrayList<BNode<T>> parents = new ArrayList<BNode<T>>(parentCount);
+			ArrayList<T> parentSeparators = new ArrayList<T>(parentCount);
+			int child = 0;
+			for (int i = 0; i < parentCount; i++) {
+				BNode<T> parent = new BNode<T>(tree.maxKeySize, tree.maxChildrenSize);
+				int childrenInParent = groupSize(level.size(), parentCount, i);
+				for (int j = 0; j < childrenInParent; j++) {
+					if (j > 0) parent.appendKey(separators.get(child - 1));
+					parent.addChild(parent.numberOfChildren(), level.get(child++));
+				}
+				if (i < parentCount - 1) parentSeparators.add(separators.get(child - 1));
+				parents.add(parent);
+			}
+			level = parents;
+			separators = parentSeparators;
+		}
+		tree.root = level.get(0);
+		tree.size = keys.size();
+		return tree;
+	}
+
+	//em quantos grupos dividir items filhos (ou n+1 "vagas" de keys, nas folhas) para cada grupo ficar perto
+	//de target filhos, sem sair do minimo e maximo de filhos por no. Se couber tudo num no so, ele vira a raiz
+	private int groupCount(int items, int target) {
+		if (items <= maxChildrenSize) return 1;
+		int fewest = (items + maxChildrenSize - 1) / maxChildrenSize;
+		int most = items / minChildrenSize;
+		int count = (int) Math.round((double) items / target);
+		return Math.max(fewest, Math.min(most, count));
+	}
+
+	//tamanho do grupo i quando items sao divididos o mais igualmente possivel em count grupos
+	private static int groupSize(int items, int count, int i) {
+		return items / count + (i < items % count ? 1 : 0);
+	}
+
 	public boolean insert(T value) {//metodo de inserir
+		TreeOperationEvent event = TreeOperationEvent.start();
+		int restructurings = this.restructurings;
+		if (TreeCounters.ENABLED) counters.operation();
 		if (root == null) {
-			root = new BNode<T>(null, maxKeySize, maxChildrenSize);
+			root = new BNode<T>(maxKeySize, maxChildrenSize);
 			root.addKey(value);
+			depth = 1;
+		} else if (topDown) {
+			insertTopDown(value);
 		} else {
 			BNode<T> BNode = root;
-			while (BNode != null) {
-				if (BNode.numberOfChildren() == 0) {
-					BNode.addKey(value);
-					if (BNode.numberOfKeys() <= maxKeySize) {
-						//tudo OK
-						break;
-					}                         
-					// precisa separar o no
-					split(BNode);
-					break;
-				}
-				//navegando na arvore
-				T lesser = BNode.getKey(0);//menor ou igual
-				if (value.compareTo(lesser) <= 0) {
-					BNode = BNode.getChild(0);
-					continue;
-				}
-
-				int numberOfKeys = BNode.numberOfKeys();//maior
-				int last = numberOfKeys - 1;
-				T greater = BNode.getKey(last);
-				if (value.compareTo(greater) > 0) {
-					BNode = BNode.getChild(numberOfKeys);
-					continue;
-				}
-
-				// procura em nos internos
-				for (int i = 1; i < BNode.numberOfKeys(); i++) {
-					T prev = BNode.getKey(i - 1);
-					T next = BNode.getKey(i);
-					if (value.compareTo(prev) > 0 && value.compareTo(next) <= 0) {
-						BNode = BNode.getChild(i);
-						break;
-					}
-				}
+			while (BNode.numberOfChildren() > 0) {
+				//navegando na arvore: desce pelo filho entre a maior key menor que o valor e a primeira maior ou igual
+				int index = BNode.lowerBound(value, counters);
+				push(BNode, index);
+				BNode = BNode.getChild(index);
 			}
+			BNode.addKey(BNode.lowerBound(value, counters), value);
+			depth = pathNodes.size() + 1;
+			if (BNode.numberOfKeys() > maxKeySize) {
+				// precisa separar o no
+				split(BNode);
+			}
+			pathNodes.clear();
 		}
 
 		size++;//aumenta o numero de nos
 
+		event.finish("BT", "insert", value, depth, this.restructurings - restructurings, size);
 		return true;
 	}
-	private void visit(BNode<T> node, String type, ArrayList<T> list){//metodo de visita
-		if(node != null){
-			if(type.equals("PRE")){//percebemos que nao deu certo visitar em outras ordens
-				/*for (i=0; i < node.getKeysSize(); i++) {
-					list.add(node.getKey(i));
-					visit(node.getChild(i), type, list);
-				}
-				visit(node.getChild(i), type, list);*/
-				System.err.println("You can only print B trees in order!");
-			}else if(type.equals("POS")){
-				/*visit(node.getLeft(), type, list);				
-				visit(node.getRight(), type, list);
-				list.add(node.getKey());*/
-				System.err.println("You can only print B trees in order!");
-			}else{//visita em ordem
-				visit(node.getChild(0), type, list);
-				for (int i = 0; i < node.getKeysSize(); i++) {
-					list.add(node.getKey(i));
-					visit(node.getChild(i+1), type, list);
-				}					
+	//percurso em ordem sem recursao e sem copiar a arvore: o iterador guarda so o caminho atual.
+	//arvores B so sao percorridas em ordem
+	public Iterator<T> iterator(TraversalOrder order) {
+		if (order != TraversalOrder.IN)
+			throw new IllegalArgumentException("You can only print B trees in order!");
+		return new InOrderIterator();
+	}
+
+	public Iterable<T> traverse(final TraversalOrder order) {//o mesmo percurso para usar em um for
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return BTree.this.iterator(order);
 			}
-		}
+		};
+	}
+
+	public Spliterator<T> spliterator(TraversalOrder order) {
+		return Spliterators.spliterator(iterator(order), size,
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL);
 	}
+
+	public Stream<T> stream(TraversalOrder order) {
+		return StreamSupport.stream(spliterator(order), false);
+	}
+
 	public ArrayList<T> toArrayList(String type){//cria o array list e retorna ele preeenchido com as chaves visitadas
 		if(root == null) return null;
 		
-		ArrayList<T> ret = new ArrayList<T>();
+		ArrayList<T> ret = new ArrayList<T>(size);
 		
-		visit(root, type, ret);
+		if (TraversalOrder.parse(type) != TraversalOrder.IN) {//percebemos que nao deu certo visitar em outras ordens
+			System.err.println("You can only print B trees in order!");
+			return ret;
+		}
+		TreeOperationEvent event = TreeOperationEvent.start();
+		for (T value : traverse(TraversalOrder.IN)) {
+			ret.add(value);
+		}
+		event.finish("BT", "traverse", null, height(), 0, size);
 		
 		return ret;
 	}
-	//quando o numero de keys é maior que o max e precisa partir o no em dois
-	private void split(BNode<T> BNodeToSplit) {
-		BNode<T> BNode = BNodeToSplit;
-		int numberOfKeys = BNode.numberOfKeys();
-		int medianIndex = numberOfKeys / 2;
-		T medianValue = BNode.getKey(medianIndex);
 
-		BNode<T> left = new BNode<T>(null, maxKeySize, maxChildrenSize);
-		for (int i = 0; i < medianIndex; i++) {
-			left.addKey(BNode.getKey(i));
+	//iterador em ordem: a pilha guarda os nos do caminho e, para cada um, o index da proxima key a devolver
+	private class InOrderIterator implements Iterator<T> {
+		private final ArrayDeque<BNode<T>> nodes = new ArrayDeque<BNode<T>>();
+		private int[] indexes = new int[16];
+
+		InOrderIterator() {
+			if (root != null) pushLeftPath(root);
 		}
-		if (BNode.numberOfChildren() > 0) {
-			for (int j = 0; j <= medianIndex; j++) {
-				BNode<T> c = BNode.getChild(j);
-				left.addChild(c);
+
+		private void pushLeftPath(BNode<T> node) {//empilha o no e os primeiros filhos ate a folha
+			while (node != null) {
+				if (nodes.size() == indexes.length) indexes = Arrays.copyOf(indexes, indexes.length * 2);
+				indexes[nodes.size()] = 0;
+				nodes.push(node);
+				node = node.getChild(0);
 			}
 		}
 
-		BNode<T> right = new BNode<T>(null, maxKeySize, maxChildrenSize);
-		for (int i = medianIndex + 1; i < numberOfKeys; i++) {
-			right.addKey(BNode.getKey(i));
+		@Override
+		public boolean hasNext() {
+			return !nodes.isEmpty();
 		}
-		if (BNode.numberOfChildren() > 0) {
-			for (int j = medianIndex + 1; j < BNode.numberOfChildren(); j++) {
-				BNode<T> c = BNode.getChild(j);
-				right.addChild(c);
+
+		@Override
+		public T next() {
+			if (nodes.isEmpty()) throw new NoSuchElementException();
+			BNode<T> node = nodes.peek();
+			int index = indexes[nodes.size() - 1]++;
+			T value = node.getKey(index);
+			if (index + 1 == node.numberOfKeys()) {
+				// ultima key do no: o no sai da pilha e, se tiver, a ultima subarvore entra
+				nodes.pop();
 			}
+			pushLeftPath(node.getChild(index + 1));
+			return value;
 		}
-
-		if (BNode.parent == null) {
+	}
+	//quando o numero de keys é maior que o max e precisa partir o no em dois
+	private void split(BNode<T> BNodeToSplit) {
+		BNode<T> BNode = BNodeToSplit;
+		if (pathNodes.isEmpty()) {
 			// nova raiz, a altura da arvore aumentou
-			BNode<T> newRoot = new BNode<T>(null, maxKeySize, maxChildrenSize);
-			newRoot.addKey(medianValue);
-			BNode.parent = newRoot;
+			BNode<T> newRoot = new BNode<T>(maxKeySize, maxChildrenSize);
+			newRoot.addChild(0, BNode);
+			splitChild(newRoot, 0);
 			root = newRoot;
-			BNode = root;
-			BNode.addChild(left);
-			BNode.addChild(right);
 		} else {
-			// moveo a key do meio pro pai
-			BNode<T> parent = BNode.parent;
-			parent.addKey(medianValue);
-			parent.removeChild(BNode);
-			parent.addChild(left);
-			parent.addChild(right);
+			// o pai e o index do no nele estao no topo da pilha do caminho
+			int index = pathIndexes[pathNodes.size() - 1];
+			BNode<T> parent = pop();
+			splitChild(parent, index);
 
 			if (parent.numberOfKeys() > maxKeySize) split(parent);
 		}
 	}
 
+	//divide o filho index do pai: o proprio filho fica com a metade esquerda, um novo no recebe a metade
+	//direita e a key do meio vai pro pai, entre os dois
+	private void splitChild(BNode<T> parent, int index) {
+		if (TreeCounters.ENABLED) counters.split();
+		restructurings++;
+		BNode<T> BNode = parent.getChild(index);
+		int numberOfKeys = BNode.numberOfKeys();
+		int medianIndex = numberOfKeys / 2;
+		T medianValue = BNode.getKey(medianIndex);
+
+		BNode<T> right = new BNode<T>(maxKeySize, maxChildrenSize);
+		right.appendKeys(BNode, medianIndex + 1, numberOfKeys);
+		if (BNode.numberOfChildren() > 0) {
+			right.appendChildren(BNode, medianIndex + 1, BNode.numberOfChildren());
+		}
+		BNode.truncate(medianIndex, medianIndex + 1);
+
+		parent.addKey(index, medianValue);
+		parent.addChild(index + 1, right);
+	}
+
+	//insercao top-down: todo no cheio no caminho e dividido antes da descida entrar nele, entao a folha
+	//sempre tem espaco e o pai de um no dividido sempre tem espaco para a key do meio
+	private void insertTopDown(T value) {
+		if (root.numberOfKeys() == maxKeySize) {
+			// nova raiz, a altura da arvore aumentou
+			BNode<T> newRoot = new BNode<T>(maxKeySize, maxChildrenSize);
+			newRoot.addChild(0, root);
+			splitChild(newRoot, 0);
+			root = newRoot;
+		}
+		BNode<T> BNode = root;
+		depth = 1;
+		while (BNode.numberOfChildren() > 0) {
+			depth++;
+			int index = BNode.lowerBound(value, counters);
+			if (BNode.getChild(index).numberOfKeys() == maxKeySize) {
+				splitChild(BNode, index);
+				// a key do meio subiu para o index: o valor segue pela metade em que cabe
+				if (TreeCounters.ENABLED) counters.comparison();
+				if (value.compareTo(BNode.getKey(index)) > 0) index++;
+			}
+			BNode = BNode.getChild(index);
+		}
+		BNode.addKey(BNode.lowerBound(value, counters), value);
+	}
+
 	public T remove(T value) {//remove a key informada e retorna ela
+		TreeOperationEvent event = TreeOperationEvent.start();
+		int restructurings = this.restructurings;
+		if (TreeCounters.ENABLED) counters.operation();
 		T removed = null;
-		BNode<T> BNode = this.getBNode(value);
-		removed = remove(value,BNode);
+		if (topDown) {
+			removed = removeTopDown(value);
+		} else {
+			BNode<T> BNode = this.getBNodeWithPath(value);
+			removed = remove(value,BNode);
+			pathNodes.clear();
+		}
+		event.finish("BT", "remove", value, depth, this.restructurings - restructurings, size);
 		return removed;
 	}
 
-	//remove a key informada do no
+	//remove a key informada do no; o caminho ate ele esta na pilha
 	private T remove(T value, BNode<T> BNode) {
 		if (BNode == null) return null;
 
@@ -177,30 +348,139 @@ public class BTree<T extends Comparable<T>>{
 		removed = BNode.removeKey(value);
 		if (BNode.numberOfChildren() == 0) {
 			// leaf BNode
-			if (BNode.parent != null && BNode.numberOfKeys() < minKeySize) {
+			if (!pathNodes.isEmpty() && BNode.numberOfKeys() < minKeySize) {
 				this.combined(BNode);
-			} else if (BNode.parent == null && BNode.numberOfKeys() == 0) {
+			} else if (pathNodes.isEmpty() && BNode.numberOfKeys() == 0) {
 				// Removing root BNode with no keys or children
 				root = null;
 			}
 		} else {
 			// internal BNode
-			BNode<T> lesser = BNode.getChild(index);
-			BNode<T> greatest = this.getGreatestBNode(lesser);
+			push(BNode, index);
+			BNode<T> greatest = this.getGreatestBNode(BNode.getChild(index));
 			T replaceValue = this.removeGreatestValue(greatest);
 			BNode.addKey(replaceValue);
-			if (greatest.parent != null && greatest.numberOfKeys() < minKeySize) {
+			if (greatest.numberOfKeys() < minKeySize) {
 				this.combined(greatest);
 			}
-			if (greatest.numberOfChildren() > maxChildrenSize) {
-				this.split(greatest);
-			}
 		}
 
 		size--;
 
 		return removed;
 	}
+
+	//remocao top-down: antes de descer em um filho com o minimo de keys, ele recebe uma key de um vizinho ou
+	//e juntado com ele, entao a key sai da folha (ou do no interno) sem nada para corrigir na volta
+	private T removeTopDown(T value) {
+		if (root == null) return null;
+
+		T removed = null;
+		BNode<T> BNode = root;
+		depth = 0;
+		while (true) {
+			depth++;
+			int index = BNode.lowerBound(value, counters);
+			if (TreeCounters.ENABLED && index < BNode.numberOfKeys()) counters.comparison();
+			boolean found = index < BNode.numberOfKeys() && BNode.getKey(index).compareTo(value) == 0;
+			if (BNode.numberOfChildren() == 0) {
+				if (found) removed = BNode.removeKey(index);
+				break;
+			}
+			if (found) {
+				BNode<T> lesser = BNode.getChild(index);
+				BNode<T> greater = BNode.getChild(index + 1);
+				if (lesser.numberOfKeys() > minKeySize) {
+					// a maior key da subarvore da esquerda toma o lugar da removida
+					removed = BNode.getKey(index);
+					BNode.setKey(index, removeGreatestTopDown(lesser));
+					break;
+				}
+				if (greater.numberOfKeys() > minKeySize) {
+					// ou a menor da subarvore da direita
+					removed = BNode.getKey(index);
+					BNode.setKey(index, removeSmallestTopDown(greater));
+					break;
+				}
+				// os dois filhos tem o minimo: a key desce para o no juntado e a descida continua nele
+				BNode = merge(BNode, index);
+				continue;
+			}
+			BNode<T> child = BNode.getChild(index);
+			BNode = child.numberOfKeys() > minKeySize ? child : fillChild(BNode, index);
+		}
+		if (root.numberOfKeys() == 0) {
+			// Removing root BNode with no keys or children
+			root = null;
+		}
+		if (removed != null) size--;
+
+		return removed;
+	}
+
+	//remove a maior key da subarvore descendo pelo ultimo filho
+	private T removeGreatestTopDown(BNode<T> BNode) {
+		while (BNode.numberOfChildren() > 0) {
+			int last = BNode.numberOfChildren() - 1;
+			BNode<T> child = BNode.getChild(last);
+			BNode = child.numberOfKeys() > minKeySize ? child : fillChild(BNode, last);
+		}
+		return BNode.removeKey(BNode.numberOfKeys() - 1);
+	}
+
+	//remove a menor key da subarvore descendo pelo primeiro filho
+	private T removeSmallestTopDown(BNode<T> BNode) {
+		while (BNode.numberOfChildren() > 0) {
+			BNode<T> child = BNode.getChild(0);
+			BNode = child.numberOfKeys() > minKeySize ? child : fillChild(BNode, 0);
+		}
+		return BNode.removeKey(0);
+	}
+
+	//completa o filho index, que tem o minimo de keys, pegando uma key de um vizinho ou juntando com ele.
+	//Retorna o no em que a descida continua
+	private BNode<T> fillChild(BNode<T> parent, int index) {
+		if (TreeCounters.ENABLED) counters.combine();
+		restructurings++;
+		BNode<T> BNode = parent.getChild(index);
+		BNode<T> leftNeighbor = index > 0 ? parent.getChild(index - 1) : null;
+		BNode<T> rightNeighbor = parent.getChild(index + 1);
+		if (leftNeighbor != null && leftNeighbor.numberOfKeys() > minKeySize) {
+			//vizinho da esquerda: a maior key dele sobe e a key do pai desce
+			BNode.addKey(0, parent.getKey(index - 1));
+			parent.setKey(index - 1, leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1));
+			if (leftNeighbor.numberOfChildren() > 0) {
+				BNode.addChild(0, leftNeighbor.removeChild(leftNeighbor.numberOfChildren() - 1));
+			}
+			return BNode;
+		}
+		if (rightNeighbor != null && rightNeighbor.numberOfKeys() > minKeySize) {
+			// vizinho da direita: a menor key dele sobe e a key do pai desce
+			BNode.addKey(BNode.numberOfKeys(), parent.getKey(index));
+			parent.setKey(index, rightNeighbor.removeKey(0));
+			if (rightNeighbor.numberOfChildren() > 0) {
+				BNode.addChild(BNode.numberOfChildren(), rightNeighbor.removeChild(0));
+			}
+			return BNode;
+		}
+		// nao pode pedir emprestado dos vizinhos
+		return merge(parent, rightNeighbor != null ? index : index - 1);
+	}
+
+	//junta o filho index, a key index do pai e o filho index+1 no filho index e retorna ele
+	private BNode<T> merge(BNode<T> parent, int index) {
+		BNode<T> BNode = parent.getChild(index);
+		BNode<T> rightNeighbor = parent.getChild(index + 1);
+		BNode.addKey(BNode.numberOfKeys(), parent.removeKey(index));
+		parent.removeChild(index + 1);
+		BNode.appendKeys(rightNeighbor, 0, rightNeighbor.numberOfKeys());
+		BNode.appendChildren(rightNeighbor, 0, rightNeighbor.numberOfChildren());
+		if (parent == root && parent.numberOfKeys() == 0) {
+			//combinou dois nos, diminiu a altura da arvore 
+			root = BNode;
+		}
+		return BNode;
+	}
 	//remove o maior valor do no e retorna ele
 	private T removeGreatestValue(BNode<T> BNode) {
 		T value = null;
@@ -226,188 +506,145 @@ public class BTree<T extends Comparable<T>>{
 	}
 	//mesma coisa do acima
 	private BNode<T> getBNode(T value) {
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if (TreeCounters.ENABLED) counters.operation();
 		BNode<T> BNode = root;
+		int depth = 0;
 		while (BNode != null) {
-			T lesser = BNode.getKey(0);
-			if (value.compareTo(lesser) < 0) {
-				if (BNode.numberOfChildren() > 0)
-					BNode = BNode.getChild(0);
-				else
-					BNode = null;
-				continue;
+			depth++;
+			// busca binaria dentro do no
+			int index = BNode.lowerBound(value, counters);
+			if (TreeCounters.ENABLED && index < BNode.numberOfKeys()) counters.comparison();
+			if (index < BNode.numberOfKeys() && BNode.getKey(index).compareTo(value) == 0) {
+				break;
 			}
+			// getChild retorna null quando o no e folha
+			BNode = BNode.getChild(index);
+		}
+		event.finish("BT", "search", value, depth, 0, size);
+		return BNode;
+	}
 
-			int numberOfKeys = BNode.numberOfKeys();
-			int last = numberOfKeys - 1;
-			T greater = BNode.getKey(last);
-			if (value.compareTo(greater) > 0) {
-				if (BNode.numberOfChildren() > numberOfKeys)
-					BNode = BNode.getChild(numberOfKeys);
-				else
-					BNode = null;
-				continue;
-			}
-
-			for (int i = 0; i < numberOfKeys; i++) {
-				T currentValue = BNode.getKey(i);
-				if (currentValue.compareTo(value) == 0) {
-					return BNode;
-				}
-
-				int next = i + 1;
-				if (next <= last) {
-					T nextValue = BNode.getKey(next);
-					if (currentValue.compareTo(value) < 0 && nextValue.compareTo(value) > 0) {
-						if (next < BNode.numberOfChildren()) {
-							BNode = BNode.getChild(next);
-							break;
-						}
-						return null;
-					}
-				}
+	//a mesma busca, mas guardando na pilha o caminho ate o no
+	private BNode<T> getBNodeWithPath(T value) {
+		BNode<T> BNode = root;
+		depth = 0;
+		while (BNode != null) {
+			depth++;
+			int index = BNode.lowerBound(value, counters);
+			if (TreeCounters.ENABLED && index < BNode.numberOfKeys()) counters.comparison();
+			if (index < BNode.numberOfKeys() && BNode.getKey(index).compareTo(value) == 0) {
+				return BNode;
 			}
+			if (BNode.numberOfChildren() == 0) break;
+			push(BNode, index);
+			BNode = BNode.getChild(index);
 		}
+		pathNodes.clear();
 		return null;
 	}
 
-	//retorna o no filho com o maior valor
+	//retorna o no filho com o maior valor, guardando o caminho ate ele
 	private BNode<T> getGreatestBNode(BNode<T> BNodeToGet) {
 		BNode<T> BNode = BNodeToGet;
 		while (BNode.numberOfChildren() > 0) {
+			push(BNode, BNode.numberOfChildren() - 1);
 			BNode = BNode.getChild(BNode.numberOfChildren() - 1);
 		}
 		return BNode;
 	}
 
+	private void push(BNode<T> BNode, int index) {//empilha o no e o index do filho por onde a descida segue
+		if (pathNodes.size() == pathIndexes.length) pathIndexes = Arrays.copyOf(pathIndexes, pathIndexes.length * 2);
+		pathIndexes[pathNodes.size()] = index;
+		pathNodes.add(BNode);
+	}
+
+	private BNode<T> pop() {//desempilha e retorna o pai do no atual
+		return pathNodes.remove(pathNodes.size() - 1);
+	}
+
 	//combina as keys com o no pai quando o numero de key é menor que o minimo 
 	private boolean combined(BNode<T> BNode) {
-		BNode<T> parent = BNode.parent;
-		int index = parent.indexOf(BNode);
-		int indexOfLeftNeighbor = index - 1;
-		int indexOfRightNeighbor = index + 1;
-
-		BNode<T> rightNeighbor = null;
-		int rightNeighborSize = -minChildrenSize;
-		if (indexOfRightNeighbor < parent.numberOfChildren()) {
-			rightNeighbor = parent.getChild(indexOfRightNeighbor);
-			rightNeighborSize = rightNeighbor.numberOfKeys();
-		}
+		if (TreeCounters.ENABLED) counters.combine();
+		restructurings++;
+		// o pai e o index do no nele estao no topo da pilha do caminho
+		int index = pathIndexes[pathNodes.size() - 1];
+		BNode<T> parent = pop();
+		BNode<T> leftNeighbor = index > 0 ? parent.getChild(index - 1) : null;
+		BNode<T> rightNeighbor = parent.getChild(index + 1);
 
 		//tenta com o vizinho
-		if (rightNeighbor != null && rightNeighborSize > minKeySize) {
-			// vizinho da direita
-			T removeValue = rightNeighbor.getKey(0);
-			int prev = getIndexOfPreviousValue(parent, removeValue);
-			T parentValue = parent.removeKey(prev);
-			T neighborValue = rightNeighbor.removeKey(0);
-			BNode.addKey(parentValue);
-			parent.addKey(neighborValue);
+		if (rightNeighbor != null && rightNeighbor.numberOfKeys() > minKeySize) {
+			// vizinho da direita: a menor key dele sobe e a key do pai desce
+			BNode.addKey(BNode.numberOfKeys(), parent.getKey(index));
+			parent.setKey(index, rightNeighbor.removeKey(0));
 			if (rightNeighbor.numberOfChildren() > 0) {
-				BNode.addChild(rightNeighbor.removeChild(0));
+				BNode.addChild(BNode.numberOfChildren(), rightNeighbor.removeChild(0));
+			}
+		} else if (leftNeighbor != null && leftNeighbor.numberOfKeys() > minKeySize) {
+			//vizinho da esquerda: a maior key dele sobe e a key do pai desce
+			BNode.addKey(0, parent.getKey(index - 1));
+			parent.setKey(index - 1, leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1));
+			if (leftNeighbor.numberOfChildren() > 0) {
+				BNode.addChild(0, leftNeighbor.removeChild(leftNeighbor.numberOfChildren() - 1));
 			}
 		} else {
-			BNode<T> leftNeighbor = null;
-			int leftNeighborSize = -minChildrenSize;
-			if (indexOfLeftNeighbor >= 0) {
-				leftNeighbor = parent.getChild(indexOfLeftNeighbor);
-				leftNeighborSize = leftNeighbor.numberOfKeys();
+			// nao pode pedir emprestado dos vizinhos: junta com um deles
+			merge(parent, rightNeighbor != null ? index : index - 1);
+			if (!pathNodes.isEmpty() && parent.numberOfKeys() < minKeySize) {
+				// remover do pai tornou ele muito pequeno
+				this.combined(parent);
 			}
+		}
 
-			if (leftNeighbor != null && leftNeighborSize > minKeySize) {
-				//vizinho da esquerda
-				T removeValue = leftNeighbor.getKey(leftNeighbor.numberOfKeys() - 1);
-				int prev = getIndexOfNextValue(parent, removeValue);
-				T parentValue = parent.removeKey(prev);
-				T neighborValue = leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1);
-				BNode.addKey(parentValue);
-				parent.addKey(neighborValue);
-				if (leftNeighbor.numberOfChildren() > 0) {
-					BNode.addChild(leftNeighbor.removeChild(leftNeighbor.numberOfChildren() - 1));
-				}
-			} else if (rightNeighbor != null && parent.numberOfKeys() > 0) {
-				// nao pode pedir emprestado dos vizinhos
-				T removeValue = rightNeighbor.getKey(0);
-				int prev = getIndexOfPreviousValue(parent, removeValue);
-				T parentValue = parent.removeKey(prev);
-				parent.removeChild(rightNeighbor);
-				BNode.addKey(parentValue);
-				for (int i = 0; i < rightNeighbor.getKeysSize(); i++) {
-					T v = rightNeighbor.getKey(i);
-					BNode.addKey(v);
-				}
-				for (int i = 0; i < rightNeighbor.getChildrenSize(); i++) {
-					BNode<T> c = rightNeighbor.getChild(i);
-					BNode.addChild(c);
-				}
+		return true;
+	}
 
-				if (parent.parent != null && parent.numberOfKeys() < minKeySize) {
-					// remover do pai tornou ele muito pequeno
-					this.combined(parent);
-				} else if (parent.numberOfKeys() == 0) {
-					//combinou dois nos, diminiu a altura da arvore 
-					BNode.parent = null;
-					root = BNode;
-				}
-			} else if (leftNeighbor != null && parent.numberOfKeys() > 0) {
-				// pede emprestado do filho esquerdo
-				T removeValue = leftNeighbor.getKey(leftNeighbor.numberOfKeys() - 1);
-				int prev = getIndexOfNextValue(parent, removeValue);
-				T parentValue = parent.removeKey(prev);
-				parent.removeChild(leftNeighbor);
-				BNode.addKey(parentValue);
-				for (int i = 0; i < leftNeighbor.getKeysSize(); i++) {
-					T v = leftNeighbor.getKey(i);
-					BNode.addKey(v);
-				}
-				for (int i = 0; i < leftNeighbor.getChildrenSize(); i++) {
-					BNode<T> c = leftNeighbor.getChild(i);
-					BNode.addChild(c);
-				}
+	//tamanho da arvore
+	public int size() {
+		return size;
+	}
 
-				if (parent.parent != null && parent.numberOfKeys() < minKeySize) {
-					// remover do pai fez ele muito pequeno, combina
-					this.combined(parent);
-				} else if (parent.numberOfKeys() == 0) {
-					BNode.parent = null;
-					root = BNode;
-				}
-			}
-		}
+	//contadores de splits, combined e comparacoes
+	public TreeCounters counters() {
+		return counters;
+	}
 
-		return true;
+	//splits e combined feitos desde a criacao da arvore
+	public int restructurings() {
+		return restructurings;
 	}
-	//retorna o valor anterior a esse valor no no
-	private int getIndexOfPreviousValue(BNode<T> BNode, T value) {
-		for (int i = 1; i < BNode.numberOfKeys(); i++) {
-			T t = BNode.getKey(i);
-			if (t.compareTo(value) >= 0)
-				return i - 1;
+
+	//altura da arvore em nos: todas as folhas estao na mesma profundidade, entao basta descer pelo primeiro filho
+	public int height() {
+		int height = 0;
+		for (BNode<T> BNode = root; BNode != null; BNode = BNode.getChild(0)) {
+			height++;
 		}
-		return BNode.numberOfKeys() - 1;
+		return height;
 	}
 
-	//pega o index do proximo valor
-	private int getIndexOfNextValue(BNode<T> BNode, T value) {
-		for (int i = 0; i < BNode.numberOfKeys(); i++) {
-			T t = BNode.getKey(i);
-			if (t.compareTo(value) >= 0)
-				return i;
-		}
-		return BNode.numberOfKeys() - 1;
+	//numero de nos da arvore
+	public int nodeCount() {
+		return root == null ? 0 : nodeCount(root);
 	}
 
-	//tamanho da arvore
-	public int size() {
-		return size;
+	private int nodeCount(BNode<T> BNode) {
+		int count = 1;
+		for (int i = 0; i < BNode.numberOfChildren(); i++) {
+			count += nodeCount(BNode.getChild(i));
+		}
+		return count;
 	}
 	//valida a arvore
 	public boolean validate() {
 		if (root == null) return true;
-		return validateBNode(root);
+		return validateBNode(root, true);
 	}
 
 	//valida o no
-	private boolean validateBNode(BNode<T> BNode) {
+	private boolean validateBNode(BNode<T> BNode, boolean isRoot) {
 		int keySize = BNode.numberOfKeys();
 		if (keySize > 1) {
 			// garante que as chaves estao organizadas
@@ -419,7 +656,7 @@ public class BTree<T extends Comparable<T>>{
 			}
 		}
 		int childrenSize = BNode.numberOfChildren();
-		if (BNode.parent == null) {
+		if (isRoot) {
 			// raiz
 			if (keySize > maxKeySize) {
 				// checa o numero maximo de keys
@@ -473,7 +710,7 @@ public class BTree<T extends Comparable<T>>{
 
 		for (int i = 0; i < BNode.getChildrenSize(); i++) {
 			BNode<T> c = BNode.getChild(i);
-			boolean valid = this.validateBNode(c);
+			boolean valid = this.validateBNode(c, false);
 			if (!valid)
 				return false;
 		}
@@ -0,0 +1,103 @@
+package btree;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//no do ConcurrentBTree: igual a um BNode sem ponteiro de pai, com um latch de leitura/escrita proprio.
+//Ser folha ou no interno nunca muda depois da criacao, entao isLeaf() pode ser lido sem o latch
+class ConcurrentBNode<T extends Comparable<T>> {
+
+	final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+	private final T[] keys;//vetor de chaves do no
+	private int keysSize = 0;//tamanho do vetor de chaves
+	private final ConcurrentBNode<T>[] children;//vetor de filhos, null nas folhas
+	private int childrenSize = 0;//tamanho do vetor de filhos
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	ConcurrentBNode(boolean leaf, int maxKeySize) {
+		//uma posicao a mais para o no poder estourar antes do split
+		this.keys = (T[]) new Comparable[maxKeySize + 1];
+		this.children = leaf ? null : new ConcurrentBNode[maxKeySize + 2];
+	}
+
+	boolean isLeaf() {
+		return children == null;
+	}
+
+	int numberOfKeys() {//retorna o numero de chaves do no
+		return keysSize;
+	}
+
+	int numberOfChildren() {//retorna o numero de filhos
+		return childrenSize;
+	}
+
+	T getKey(int index) {//retorna a key em um index no vetor de chave
+		return keys[index];
+	}
+
+	void setKey(int index, T value) {//troca a key em um index
+		keys[index] = value;
+	}
+
+	ConcurrentBNode<T> getChild(int index) {//retorna o filho naquele index
+		return children[index];
+	}
+
+	int lowerBound(T value) {//busca binaria: primeiro index cuja key e maior ou igual ao valor
+		int low = 0;
+		int high = keysSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(value) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	void addKey(int index, T value) {//adiciona uma key no index informado
+		System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+		keys[index] = value;
+		keysSize++;
+	}
+
+	T removeKey(int index) {//remove uma key de acordo com o index dela
+		T value = keys[index];
+		System.arraycopy(keys, index + 1, keys, index, keysSize - index - 1);
+		keys[--keysSize] = null;
+		return value;
+	}
+
+	void addChild(int index, ConcurrentBNode<T> child) {//adiciona o filho no index informado
+		System.arraycopy(children, index, children, index + 1, childrenSize - index);
+		children[index] = child;
+		childrenSize++;
+	}
+
+	ConcurrentBNode<T> removeChild(int index) {//remove o filho em tal index
+		ConcurrentBNode<T> value = children[index];
+		System.arraycopy(children, index + 1, children, index, childrenSize - index - 1);
+		children[--childrenSize] = null;
+		return value;
+	}
+
+	void appendFrom(ConcurrentBNode<T> source, int keyFrom, int childFrom) {//copia as keys e filhos finais de outro no pro final deste
+		int keyCount = source.keysSize - keyFrom;
+		System.arraycopy(source.keys, keyFrom, keys, keysSize, keyCount);
+		keysSize += keyCount;
+		if (!isLeaf()) {
+			int childCount = source.childrenSize - childFrom;
+			System.arraycopy(source.children, childFrom, children, childrenSize, childCount);
+			childrenSize += childCount;
+		}
+	}
+
+	void truncate(int newKeysSize, int newChildrenSize) {//descarta as keys e filhos a partir desses tamanhos
+		Arrays.fill(keys, newKeysSize, keysSize, null);
+		keysSize = newKeysSize;
+		if (!isLeaf()) {
+			Arrays.fill(children, newChildrenSize, childrenSize, null);
+			childrenSize = newChildrenSize;
+		}
+	}
+}
@@ -0,0 +1,419 @@
+package btree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//arvore B que aceita varias threads inserindo, removendo e buscando ao mesmo tempo, com um latch de
+//leitura/escrita por no e latch crabbing: a descida pega o latch do filho antes de soltar o do pai.
+//Buscas descem so com latches de leitura. Insercoes primeiro tentam o caminho otimista: latches de leitura
+//ate a folha e de escrita so nela; se a folha estiver cheia, refazem a descida com latches de escrita,
+//soltando todos os ancestrais assim que chegam em um no seguro (que nao vai fazer split). Remocoes sempre
+//descem com latches de escrita, soltando os ancestrais em nos que nao vao ficar abaixo do minimo.
+//Como os latches sao pegos sempre de cima para baixo, nao ha deadlock. O ponteiro da raiz tem o seu
+//proprio latch, que so fica preso quando a raiz pode mudar.
+//As chaves sao um conjunto: insert retorna false para uma chave repetida
+public class ConcurrentBTree<T extends Comparable<T>> {
+
+	private final int minKeySize;
+	private final int maxKeySize;
+
+	private final ReentrantReadWriteLock rootLatch = new ReentrantReadWriteLock();//protege o ponteiro root
+	private ConcurrentBNode<T> root;
+	private final AtomicInteger size = new AtomicInteger();
+
+	//construtor padrao que seta a arvore pra 2-3
+	public ConcurrentBTree() {
+		this(1);
+	}
+
+	//mesma ordem do BTree: de order a 2*order chaves por no
+	public ConcurrentBTree(int order) {
+		if (order < 1)
+			throw new IllegalArgumentException("A ordem deve ser pelo menos 1: " + order);
+		this.minKeySize = order;
+		this.maxKeySize = 2 * order;
+		this.root = new ConcurrentBNode<T>(true, maxKeySize);
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public boolean contains(T value) {
+		rootLatch.readLock().lock();
+		ConcurrentBNode<T> node = root;
+		node.latch.readLock().lock();
+		rootLatch.readLock().unlock();
+		while (true) {
+			int index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) {
+				node.latch.readLock().unlock();
+				return true;
+			}
+			if (node.isLeaf()) {
+				node.latch.readLock().unlock();
+				return false;
+			}
+			ConcurrentBNode<T> child = node.getChild(index);
+			child.latch.readLock().lock();
+			node.latch.readLock().unlock();
+			node = child;
+		}
+	}
+
+	//insere a chave; retorna false se ela ja existia
+	public boolean insert(T value) {
+		Boolean inserted = insertOptimistic(value);
+		if (inserted != null)
+			return inserted;
+		return insertPessimistic(value);
+	}
+
+	//desce com latches de leitura e pega o de escrita so na folha. Retorna null se a folha esta cheia e
+	//a insercao precisa de split, que e feito pelo caminho pessimista
+	private Boolean insertOptimistic(T value) {
+		rootLatch.readLock().lock();
+		ConcurrentBNode<T> node = root;
+		lockForLeafWrite(node);
+		rootLatch.readLock().unlock();
+		while (!node.isLeaf()) {
+			int index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) {
+				node.latch.readLock().unlock();
+				return false;
+			}
+			ConcurrentBNode<T> child = node.getChild(index);
+			lockForLeafWrite(child);
+			node.latch.readLock().unlock();
+			node = child;
+		}
+		try {
+			int index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0)
+				return false;
+			if (node.numberOfKeys() >= maxKeySize)
+				return null;
+			node.addKey(index, value);
+			size.incrementAndGet();
+			return true;
+		} finally {
+			node.latch.writeLock().unlock();
+		}
+	}
+
+	//latch de escrita nas folhas e de leitura nos nos internos
+	private void lockForLeafWrite(ConcurrentBNode<T> node) {
+		if (node.isLeaf())
+			node.latch.writeLock().lock();
+		else
+			node.latch.readLock().lock();
+	}
+
+	private boolean insertPessimistic(T value) {
+		Path path = new Path();
+		rootLatch.writeLock().lock();
+		path.rootHeld = true;
+		ConcurrentBNode<T> node = root;
+		node.latch.writeLock().lock();
+		if (node.numberOfKeys() < maxKeySize)
+			path.releaseAll();
+		path.push(node, -1);
+		try {
+			while (!node.isLeaf()) {
+				int index = node.lowerBound(value);
+				if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0)
+					return false;
+				ConcurrentBNode<T> child = node.getChild(index);
+				child.latch.writeLock().lock();
+				//um filho que ainda tem espaco absorve o split de baixo: os ancestrais nao mudam mais
+				if (child.numberOfKeys() < maxKeySize)
+					path.releaseAll();
+				path.push(child, index);
+				node = child;
+			}
+			int index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0)
+				return false;
+			node.addKey(index, value);
+			size.incrementAndGet();
+			split(path);
+			return true;
+		} finally {
+			path.releaseAll();
+		}
+	}
+
+	//divide, de baixo para cima, os nos do caminho que passaram do maximo. So nos inseguros continuam presos,
+	//entao o pai de um no que estoura esta sempre no caminho
+	private void split(Path path) {
+		int level = path.size - 1;
+		ConcurrentBNode<T> node = path.nodes[level];
+		while (node.numberOfKeys() > maxKeySize) {
+			int middle = node.numberOfKeys() / 2;
+			T median = node.getKey(middle);
+			ConcurrentBNode<T> right = new ConcurrentBNode<T>(node.isLeaf(), maxKeySize);
+			right.appendFrom(node, middle + 1, middle + 1);
+			node.truncate(middle, middle + 1);
+			if (level == 0) {
+				//so a raiz pode estourar no topo do caminho, e nesse caso o latch da raiz esta preso
+				ConcurrentBNode<T> newRoot = new ConcurrentBNode<T>(false, maxKeySize);
+				newRoot.addKey(0, median);
+				newRoot.addChild(0, node);
+				newRoot.addChild(1, right);
+				root = newRoot;
+				return;
+			}
+			ConcurrentBNode<T> parent = path.nodes[level - 1];
+			int index = path.indexes[level];
+			parent.addKey(index, median);
+			parent.addChild(index + 1, right);
+			node = parent;
+			level--;
+		}
+	}
+
+	//remove a chave; retorna false se ela nao existe
+	public boolean remove(T value) {
+		Path path = new Path();
+		rootLatch.writeLock().lock();
+		path.rootHeld = true;
+		ConcurrentBNode<T> node = root;
+		node.latch.writeLock().lock();
+		if (node.isLeaf() || node.numberOfKeys() > 1)
+			path.releaseAll();
+		path.push(node, -1);
+		//no interno que tem a chave: fica preso ate o fim, mesmo que os ancestrais sejam soltos, porque a
+		//chave dele vai ser trocada pela antecessora, que sai de uma folha
+		ConcurrentBNode<T> found = null;
+		int foundIndex = -1;
+		try {
+			while (true) {
+				int index;
+				if (found == null) {
+					index = node.lowerBound(value);
+					if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) {
+						if (node.isLeaf()) {
+							node.removeKey(index);
+							break;
+						}
+						found = node;
+						foundIndex = index;
+					} else if (node.isLeaf()) {
+						return false;
+					}
+				} else {
+					//depois de achar a chave, a descida vai sempre pela direita ate a maior chave da subarvore
+					index = node.numberOfChildren() - 1;
+					if (node.isLeaf()) {
+						found.setKey(foundIndex, node.removeKey(node.numberOfKeys() - 1));
+						break;
+					}
+				}
+				ConcurrentBNode<T> child = node.getChild(index);
+				child.latch.writeLock().lock();
+				if (child.numberOfKeys() > minKeySize)
+					path.releaseAllExcept(found);
+				path.push(child, index);
+				node = child;
+			}
+			size.decrementAndGet();
+			rebalance(path);
+			return true;
+		} finally {
+			path.releaseAll();
+			if (found != null && path.pinned == found)
+				found.latch.writeLock().unlock();
+		}
+	}
+
+	//corrige, de baixo para cima, os nos do caminho que ficaram abaixo do minimo, pegando uma chave de um
+	//irmao ou juntando com ele. O irmao e preso com o pai ja preso, entao ninguem mais chega nele por cima
+	private void rebalance(Path path) {
+		for (int level = path.size - 1; level > 0; level--) {
+			ConcurrentBNode<T> node = path.nodes[level];
+			if (node.numberOfKeys() >= minKeySize)
+				return;
+			ConcurrentBNode<T> parent = path.nodes[level - 1];
+			int index = path.indexes[level];
+			ConcurrentBNode<T> left = index > 0 ? parent.getChild(index - 1) : null;
+			ConcurrentBNode<T> right = index < parent.numberOfChildren() - 1 ? parent.getChild(index + 1) : null;
+			if (left != null) {
+				left.latch.writeLock().lock();
+				try {
+					if (left.numberOfKeys() > minKeySize) {
+						//a maior chave do irmao esquerdo sobe e a chave do pai desce
+						node.addKey(0, parent.getKey(index - 1));
+						parent.setKey(index - 1, left.removeKey(left.numberOfKeys() - 1));
+						if (!node.isLeaf())
+							node.addChild(0, left.removeChild(left.numberOfChildren() - 1));
+						return;
+					}
+					if (right == null) {
+						//junta o no no irmao esquerdo, com a chave do pai entre os dois
+						left.addKey(left.numberOfKeys(), parent.removeKey(index - 1));
+						left.appendFrom(node, 0, 0);
+						parent.removeChild(index);
+						continue;
+					}
+				} finally {
+					left.latch.writeLock().unlock();
+				}
+			}
+			right.latch.writeLock().lock();
+			try {
+				if (right.numberOfKeys() > minKeySize) {
+					//a menor chave do irmao direito sobe e a chave do pai desce
+					node.addKey(node.numberOfKeys(), parent.getKey(index));
+					parent.setKey(index, right.removeKey(0));
+					if (!node.isLeaf())
+						node.addChild(node.numberOfChildren(), right.removeChild(0));
+					return;
+				}
+				//junta o irmao direito neste no
+				node.addKey(node.numberOfKeys(), parent.removeKey(index));
+				node.appendFrom(right, 0, 0);
+				parent.removeChild(index + 1);
+			} finally {
+				right.latch.writeLock().unlock();
+			}
+		}
+		//a raiz interna sem chaves da lugar ao seu unico filho; nesse caso o latch da raiz esta preso
+		ConcurrentBNode<T> top = path.nodes[0];
+		if (top == root && !top.isLeaf() && top.numberOfKeys() == 0)
+			root = top.getChild(0);
+	}
+
+	//todas as chaves em ordem, copiadas com a arvore inteira presa para leitura: e um retrato consistente
+	public ArrayList<T> toArrayList() {
+		ArrayList<T> keys = new ArrayList<T>(size());
+		ArrayList<ConcurrentBNode<T>> locked = lockAll();
+		try {
+			collect(locked.get(0), keys);
+		} finally {
+			unlockAll(locked);
+		}
+		return keys;
+	}
+
+	private void collect(ConcurrentBNode<T> node, ArrayList<T> keys) {
+		for (int i = 0; i < node.numberOfKeys(); i++) {
+			if (!node.isLeaf())
+				collect(node.getChild(i), keys);
+			keys.add(node.getKey(i));
+		}
+		if (!node.isLeaf())
+			collect(node.getChild(node.numberOfChildren() - 1), keys);
+	}
+
+	//valida a arvore com todos os nos presos para leitura: chaves em ordem e dentro dos limites do pai,
+	//numero de chaves e filhos de cada no, todas as folhas na mesma profundidade e o tamanho
+	public boolean validate() {
+		ArrayList<ConcurrentBNode<T>> locked = lockAll();
+		try {
+			int[] count = new int[1];
+			ConcurrentBNode<T> top = locked.get(0);
+			if (!top.isLeaf() && top.numberOfKeys() < 1)
+				return false;
+			return validate(top, null, null, true, count) >= 0 && count[0] == size.get();
+		} finally {
+			unlockAll(locked);
+		}
+	}
+
+	//retorna a altura da subarvore ou -1 se alguma propriedade foi violada
+	private int validate(ConcurrentBNode<T> node, T min, T max, boolean isRoot, int[] count) {
+		int keys = node.numberOfKeys();
+		if (keys > maxKeySize || (!isRoot && keys < minKeySize))
+			return -1;
+		for (int i = 0; i < keys; i++) {
+			T key = node.getKey(i);
+			if (i > 0 && node.getKey(i - 1).compareTo(key) >= 0) return -1;
+			if (min != null && key.compareTo(min) <= 0) return -1;
+			if (max != null && key.compareTo(max) >= 0) return -1;
+		}
+		count[0] += keys;
+		if (node.isLeaf())
+			return 1;
+		if (node.numberOfChildren() != keys + 1)
+			return -1;
+		int height = -1;
+		for (int i = 0; i <= keys; i++) {
+			T low = i == 0 ? min : node.getKey(i - 1);
+			T high = i == keys ? max : node.getKey(i);
+			int childHeight = validate(node.getChild(i), low, high, false, count);
+			if (childHeight < 0 || (height >= 0 && childHeight != height))
+				return -1;
+			height = childHeight;
+		}
+		return height + 1;
+	}
+
+	//prende o latch da raiz e todos os nos para leitura, de cima para baixo; a raiz fica na posicao 0
+	private ArrayList<ConcurrentBNode<T>> lockAll() {
+		ArrayList<ConcurrentBNode<T>> locked = new ArrayList<ConcurrentBNode<T>>();
+		rootLatch.readLock().lock();
+		try {
+			lockSubtree(root, locked);
+		} finally {
+			rootLatch.readLock().unlock();
+		}
+		return locked;
+	}
+
+	private void lockSubtree(ConcurrentBNode<T> node, ArrayList<ConcurrentBNode<T>> locked) {
+		node.latch.readLock().lock();
+		locked.add(node);
+		if (!node.isLeaf()) {
+			for (int i = 0; i < node.numberOfChildren(); i++)
+				lockSubtree(node.getChild(i), locked);
+		}
+	}
+
+	private void unlockAll(ArrayList<ConcurrentBNode<T>> locked) {
+		for (ConcurrentBNode<T> node : locked)
+			node.latch.readLock().unlock();
+	}
+
+	//caminho com latches de escrita presos, do no seguro mais alto ate o no atual, com o index de cada
+	//no no seu pai. Quando um no seguro e alcancado, tudo acima dele e solto
+	private class Path {
+		@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+		ConcurrentBNode<T>[] nodes = new ConcurrentBNode[8];
+		int[] indexes = new int[8];
+		int size = 0;
+		boolean rootHeld = false;//se o latch do ponteiro da raiz esta preso
+		ConcurrentBNode<T> pinned = null;//no que saiu do caminho mas continua preso
+
+		void push(ConcurrentBNode<T> node, int index) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				indexes = Arrays.copyOf(indexes, size * 2);
+			}
+			nodes[size] = node;
+			indexes[size] = index;
+			size++;
+		}
+
+		void releaseAll() {
+			releaseAllExcept(null);
+		}
+
+		//solta o latch da raiz e os nos do caminho, menos keep, que passa a ficar preso fora do caminho
+		void releaseAllExcept(ConcurrentBNode<T> keep) {
+			if (rootHeld) {
+				rootLatch.writeLock().unlock();
+				rootHeld = false;
+			}
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == keep)
+					pinned = keep;
+				else
+					nodes[i].latch.writeLock().unlock();
+				nodes[i] = null;
+			}
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package btree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//converte keys de/para um espaco de tamanho fixo dentro de uma pagina do PagedBTree
+public interface KeyCodec<T extends Comparable<T>> {
+
+	int slotSize();//numero de bytes que cada key ocupa na pagina
+
+	void write(ByteBuffer buffer, int offset, T key);//escreve a key a partir do offset (posicao absoluta)
+
+	T read(ByteBuffer buffer, int offset);//le a key que comeca no offset (posicao absoluta)
+
+	//lanca IllegalArgumentException se a key nao cabe em slotSize() bytes; o PagedBTree chama antes de mudar a arvore
+	default void check(T key) {
+	}
+
+	//keys String em UTF-8 com ate maxBytes bytes, precedidas pelo tamanho
+	static KeyCodec<String> utf8(final int maxBytes) {
+		if (maxBytes <= 0 || maxBytes > Short.MAX_VALUE)
+			throw new IllegalArgumentException("maxBytes deve estar entre 1 e " + Short.MAX_VALUE);
+		return new KeyCodec<String>() {
+			@Override
+			public int slotSize() {
+				return 2 + maxBytes;
+			}
+
+			@Override
+			public void check(String key) {
+				encode(key);
+			}
+
+			private byte[] encode(String key) {
+				byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > maxBytes)
+					throw new IllegalArgumentException("key com " + bytes.length + " bytes, o maximo e " + maxBytes);
+				return bytes;
+			}
+
+			@Override
+			public void write(ByteBuffer buffer, int offset, String key) {
+				byte[] bytes = encode(key);
+				buffer.putShort(offset, (short) bytes.length);
+				for (int i = 0; i < bytes.length; i++) {
+					buffer.put(offset + 2 + i, bytes[i]);
+				}
+			}
+
+			@Override
+			public String read(ByteBuffer buffer, int offset) {
+				byte[] bytes = new byte[buffer.getShort(offset)];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = buffer.get(offset + 2 + i);
+				}
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+		};
+	}
+
+	//keys Long em 8 bytes
+	static KeyCodec<Long> longs() {
+		return new KeyCodec<Long>() {
+			@Override
+			public int slotSize() {
+				return 8;
+			}
+
+			@Override
+			public void write(ByteBuffer buffer, int offset, Long key) {
+				buffer.putLong(offset, key);
+			}
+
+			@Override
+			public Long read(ByteBuffer buffer, int offset) {
+				return buffer.getLong(offset);
+			}
+		};
+	}
+}
@@ -0,0 +1,76 @@
+package btree;
+
+import java.util.Arrays;
+
+//no do LongBTree: as keys ficam em um long[] (sem boxing e sem compareTo) e um no interno tem sempre
+//keysSize+1 filhos, entao o numero de filhos nao e guardado
+final class LongBNode {
+
+	final long[] keys;//vetor de chaves do no
+	int keysSize = 0;//tamanho do vetor de chaves
+	final LongBNode[] children;//vetor de filhos, null nas folhas
+
+	LongBNode(boolean leaf, int maxKeySize) {
+		this.keys = new long[maxKeySize];
+		this.children = leaf ? null : new LongBNode[maxKeySize + 1];
+	}
+
+	boolean isLeaf() {
+		return children == null;
+	}
+
+	//primeiro index cuja key e maior ou igual ao valor, por uma busca binaria sem desvios: a cada passo o
+	//intervalo cai pela metade e a escolha da metade vira um cmov, entao o processador nunca erra a previsao
+	//de um desvio. Em nos de ate algumas dezenas de keys isso e bem mais rapido que a busca binaria comum
+	int lowerBound(long value) {
+		int n = keysSize;
+		if (n == 0) return 0;
+		long[] keys = this.keys;
+		int base = 0;
+		while (n > 1) {
+			int half = n >>> 1;
+			base = keys[base + half] < value ? base + half : base;
+			n -= half;
+		}
+		return base + (keys[base] < value ? 1 : 0);
+	}
+
+	void addKey(int index, long value) {//adiciona uma key no index informado
+		System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+		keys[index] = value;
+		keysSize++;
+	}
+
+	long removeKey(int index) {//remove uma key de acordo com o index dela
+		long value = keys[index];
+		System.arraycopy(keys, index + 1, keys, index, keysSize - index - 1);
+		keysSize--;
+		return value;
+	}
+
+	void addChild(int index, LongBNode child) {//adiciona o filho no index informado; quem chama ja mudou keysSize
+		System.arraycopy(children, index, children, index + 1, keysSize - index);
+		children[index] = child;
+	}
+
+	LongBNode removeChild(int index) {//remove o filho em tal index; quem chama ja mudou keysSize
+		LongBNode value = children[index];
+		System.arraycopy(children, index + 1, children, index, keysSize + 1 - index);
+		children[keysSize + 1] = null;
+		return value;
+	}
+
+	void appendFrom(LongBNode source, int from) {//copia as keys a partir de from e os filhos correspondentes de outro no pro final deste
+		int count = source.keysSize - from;
+		if (children != null)
+			System.arraycopy(source.children, from, children, keysSize, count + 1);
+		System.arraycopy(source.keys, from, keys, keysSize, count);
+		keysSize += count;
+	}
+
+	void truncate(int newKeysSize) {//descarta as keys e filhos a partir desse tamanho
+		if (children != null)
+			Arrays.fill(children, newKeysSize + 1, keysSize + 1, null);
+		keysSize = newKeysSize;
+	}
+}
@@ -0,0 +1,305 @@
+package btree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+//arvore B especializada para keys long, como ids de 64 bits: os nos guardam as keys em long[], entao nao ha
+//boxing de Long nem chamadas virtuais de compareTo, e a busca dentro do no e a binaria sem desvios do
+//LongBNode. Usa o algoritmo top-down do BTree (insercao e remocao em uma descida so), com as mesmas regras:
+//de order a 2*order+1 keys por no e chaves repetidas sao aceitas
+public class LongBTree {
+
+	//com a ordem padrao um no tem ate 31 keys: o vetor de keys ocupa 264 bytes, pouco mais de 4 linhas de cache,
+	//e a busca no no faz 5 comparacoes. Foi a ordem com a busca mais rapida no LongBTreeBenchmark
+	public static final int DEFAULT_ORDER = 15;
+
+	private final int minKeySize;
+	private final int maxKeySize;
+
+	private LongBNode root = null;
+	private int size = 0;
+
+	public LongBTree() {
+		this(DEFAULT_ORDER);
+	}
+
+	//construtor que cria uma arvore de acordo com a ordem informada
+	public LongBTree(int order) {
+		if (order < 1)
+			throw new IllegalArgumentException("A ordem deve ser pelo menos 1: " + order);
+		this.minKeySize = order;
+		this.maxKeySize = 2 * order + 1;
+	}
+
+	//insercao top-down: todo no cheio no caminho e dividido antes da descida entrar nele; como no BTree,
+	//sempre retorna true
+	public boolean insert(long value) {
+		if (root == null) {
+			root = new LongBNode(true, maxKeySize);
+		} else if (root.keysSize == maxKeySize) {
+			// nova raiz, a altura da arvore aumentou
+			LongBNode newRoot = new LongBNode(false, maxKeySize);
+			newRoot.children[0] = root;
+			splitChild(newRoot, 0);
+			root = newRoot;
+		}
+		LongBNode node = root;
+		while (!node.isLeaf()) {
+			int index = node.lowerBound(value);
+			if (node.children[index].keysSize == maxKeySize) {
+				splitChild(node, index);
+				// a key do meio subiu para o index: o valor segue pela metade em que cabe
+				if (value > node.keys[index]) index++;
+			}
+			node = node.children[index];
+		}
+		node.addKey(node.lowerBound(value), value);
+		size++;
+		return true;
+	}
+
+	//divide o filho index do pai: o proprio filho fica com a metade esquerda, um novo no recebe a metade
+	//direita e a key do meio vai pro pai, entre os dois
+	private void splitChild(LongBNode parent, int index) {
+		LongBNode node = parent.children[index];
+		int medianIndex = node.keysSize / 2;
+		long medianValue = node.keys[medianIndex];
+		LongBNode right = new LongBNode(node.isLeaf(), maxKeySize);
+		right.appendFrom(node, medianIndex + 1);
+		node.truncate(medianIndex);
+		parent.addKey(index, medianValue);
+		parent.addChild(index + 1, right);
+	}
+
+	//remocao top-down: antes de descer em um filho com o minimo de keys, ele recebe uma key de um vizinho ou
+	//e juntado com ele. Remove uma ocorrencia e retorna false se a key nao esta na arvore
+	public boolean remove(long value) {
+		if (root == null) return false;
+
+		boolean removed = false;
+		LongBNode node = root;
+		while (true) {
+			int index = node.lowerBound(value);
+			boolean found = index < node.keysSize && node.keys[index] == value;
+			if (node.isLeaf()) {
+				if (found) {
+					node.removeKey(index);
+					removed = true;
+				}
+				break;
+			}
+			if (found) {
+				LongBNode lesser = node.children[index];
+				LongBNode greater = node.children[index + 1];
+				if (lesser.keysSize > minKeySize) {
+					// a maior key da subarvore da esquerda toma o lugar da removida
+					node.keys[index] = removeGreatest(lesser);
+					removed = true;
+					break;
+				}
+				if (greater.keysSize > minKeySize) {
+					// ou a menor da subarvore da direita
+					node.keys[index] = removeSmallest(greater);
+					removed = true;
+					break;
+				}
+				// os dois filhos tem o minimo: a key desce para o no juntado e a descida continua nele
+				node = merge(node, index);
+				continue;
+			}
+			LongBNode child = node.children[index];
+			node = child.keysSize > minKeySize ? child : fillChild(node, index);
+		}
+		if (root.keysSize == 0 && root.isLeaf()) {
+			root = null;
+		}
+		if (removed) size--;
+		return removed;
+	}
+
+	//remove a maior key da subarvore descendo pelo ultimo filho
+	private long removeGreatest(LongBNode node) {
+		while (!node.isLeaf()) {
+			int last = node.keysSize;
+			LongBNode child = node.children[last];
+			node = child.keysSize > minKeySize ? child : fillChild(node, last);
+		}
+		return node.removeKey(node.keysSize - 1);
+	}
+
+	//remove a menor key da subarvore descendo pelo primeiro filho
+	private long removeSmallest(LongBNode node) {
+		while (!node.isLeaf()) {
+			LongBNode child = node.children[0];
+			node = child.keysSize > minKeySize ? child : fillChild(node, 0);
+		}
+		return node.removeKey(0);
+	}
+
+	//completa o filho index, que tem o minimo de keys, pegando uma key de um vizinho ou juntando com ele.
+	//Retorna o no em que a descida continua
+	private LongBNode fillChild(LongBNode parent, int index) {
+		LongBNode node = parent.children[index];
+		LongBNode leftNeighbor = index > 0 ? parent.children[index - 1] : null;
+		LongBNode rightNeighbor = index < parent.keysSize ? parent.children[index + 1] : null;
+		if (leftNeighbor != null && leftNeighbor.keysSize > minKeySize) {
+			//vizinho da esquerda: a maior key dele sobe e a key do pai desce
+			node.addKey(0, parent.keys[index - 1]);
+			parent.keys[index - 1] = leftNeighbor.removeKey(leftNeighbor.keysSize - 1);
+			if (!node.isLeaf()) {
+				node.addChild(0, leftNeighbor.removeChild(leftNeighbor.keysSize + 1));
+			}
+			return node;
+		}
+		if (rightNeighbor != null && rightNeighbor.keysSize > minKeySize) {
+			// vizinho da direita: a menor key dele sobe e a key do pai desce
+			node.addKey(node.keysSize, parent.keys[index]);
+			parent.keys[index] = rightNeighbor.removeKey(0);
+			if (!node.isLeaf()) {
+				node.addChild(node.keysSize, rightNeighbor.removeChild(0));
+			}
+			return node;
+		}
+		// nao pode pedir emprestado dos vizinhos
+		return merge(parent, rightNeighbor != null ? index : index - 1);
+	}
+
+	//junta o filho index, a key index do pai e o filho index+1 no filho index e retorna ele
+	private LongBNode merge(LongBNode parent, int index) {
+		LongBNode node = parent.children[index];
+		LongBNode rightNeighbor = parent.children[index + 1];
+		node.addKey(node.keysSize, parent.removeKey(index));
+		parent.removeChild(index + 1);
+		node.appendFrom(rightNeighbor, 0);
+		if (parent == root && parent.keysSize == 0) {
+			//combinou dois nos, diminiu a altura da arvore
+			root = node;
+		}
+		return node;
+	}
+
+	public boolean contains(long value) {//testa se essa key esta na arvore
+		LongBNode node = root;
+		while (node != null) {
+			int index = node.lowerBound(value);
+			if (index < node.keysSize && node.keys[index] == value)
+				return true;
+			node = node.isLeaf() ? null : node.children[index];
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {//reseta a arvore
+		root = null;
+		size = 0;
+	}
+
+	//keys em ordem crescente
+	public long[] toArray() {
+		long[] keys = new long[size];
+		int i = 0;
+		PrimitiveIterator.OfLong iterator = iterator();
+		while (iterator.hasNext())
+			keys[i++] = iterator.nextLong();
+		return keys;
+	}
+
+	public LongStream stream() {
+		return StreamSupport.longStream(Spliterators.spliterator(iterator(), size,
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL), false);
+	}
+
+	//percurso em ordem: a pilha guarda os nos do caminho e, para cada um, o index da proxima key a devolver
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+			private LongBNode[] nodes = new LongBNode[16];
+			private int[] indexes = new int[16];
+			private int depth = 0;
+
+			{
+				if (root != null && root.keysSize > 0) pushLeftPath(root);
+			}
+
+			private void pushLeftPath(LongBNode node) {//empilha o no e os primeiros filhos ate a folha
+				while (true) {
+					if (depth == nodes.length) {
+						nodes = Arrays.copyOf(nodes, depth * 2);
+						indexes = Arrays.copyOf(indexes, depth * 2);
+					}
+					nodes[depth] = node;
+					indexes[depth++] = 0;
+					if (node.isLeaf()) return;
+					node = node.children[0];
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return depth > 0;
+			}
+
+			@Override
+			public long nextLong() {
+				if (depth == 0) throw new NoSuchElementException();
+				LongBNode node = nodes[depth - 1];
+				int index = indexes[depth - 1]++;
+				long value = node.keys[index];
+				if (index + 1 == node.keysSize) {
+					// ultima key do no: o no sai da pilha e, se tiver, a ultima subarvore entra
+					nodes[--depth] = null;
+				}
+				if (!node.isLeaf()) pushLeftPath(node.children[index + 1]);
+				return value;
+			}
+		};
+	}
+
+	//valida a arvore: keys em ordem e dentro dos limites do pai, numero de keys de cada no, todas as folhas
+	//na mesma profundidade e o tamanho
+	public boolean validate() {
+		if (root == null)
+			return size == 0;
+		if (!root.isLeaf() && root.keysSize < 1)
+			return false;
+		int[] count = new int[1];
+		return validate(root, Long.MIN_VALUE, Long.MAX_VALUE, true, count) >= 0 && count[0] == size;
+	}
+
+	//retorna a altura da subarvore ou -1 se alguma propriedade foi violada
+	private int validate(LongBNode node, long min, long max, boolean isRoot, int[] count) {
+		int keys = node.keysSize;
+		if (keys > maxKeySize || (!isRoot && keys < minKeySize))
+			return -1;
+		for (int i = 0; i < keys; i++) {
+			long key = node.keys[i];
+			if ((i > 0 && node.keys[i - 1] > key) || key < min || key > max)
+				return -1;
+		}
+		count[0] += keys;
+		if (node.isLeaf())
+			return 1;
+		int height = -1;
+		for (int i = 0; i <= keys; i++) {
+			LongBNode child = node.children[i];
+			if (child == null)
+				return -1;
+			int childHeight = validate(child, i == 0 ? min : node.keys[i - 1], i == keys ? max : node.keys[i], false,
+					count);
+			if (childHeight < 0 || (height >= 0 && childHeight != height))
+				return -1;
+			height = childHeight;
+		}
+		if (keys + 1 < node.children.length && node.children[keys + 1] != null)
+			return -1;
+		return height + 1;
+	}
+}
@@ -0,0 +1,154 @@
+package btree;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//no do PagedBTree: copia em memoria de uma pagina do arquivo. Os filhos sao numeros de pagina, nao referencias
+class PagedBNode<T extends Comparable<T>> {
+
+	private final int page;//numero da pagina deste no
+	private final T[] keys;//vetor de chaves do no
+	private int keysSize = 0;//tamanho do vetor de chaves
+	private final int[] children;//paginas dos filhos
+	private int childrenSize = 0;//tamanho do vetor de filhos
+	private boolean dirty = false;//se foi alterado desde que foi lido/escrito no arquivo
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	PagedBNode(int page, int maxKeySize, int maxChildrenSize) {
+		this.page = page;
+		this.keys = (T[]) new Comparable[maxKeySize + 1];
+		this.children = new int[maxChildrenSize + 1];
+	}
+
+	//layout da pagina: [short numero de keys][short numero de filhos][keys em slots fixos][filhos int]
+	static int pageSize(int maxKeySize, int maxChildrenSize, int slotSize) {
+		return 4 + maxKeySize * slotSize + maxChildrenSize * 4;
+	}
+
+	//le o no que esta na pagina que comeca em base
+	void read(ByteBuffer buffer, int base, KeyCodec<T> codec, int maxKeySize) {
+		keysSize = buffer.getShort(base);
+		childrenSize = buffer.getShort(base + 2);
+		int offset = base + 4;
+		for (int i = 0; i < keysSize; i++) {
+			keys[i] = codec.read(buffer, offset + i * codec.slotSize());
+		}
+		offset += maxKeySize * codec.slotSize();
+		for (int i = 0; i < childrenSize; i++) {
+			children[i] = buffer.getInt(offset + i * 4);
+		}
+		dirty = false;
+	}
+
+	//escreve o no na pagina que comeca em base
+	void write(ByteBuffer buffer, int base, KeyCodec<T> codec, int maxKeySize) {
+		buffer.putShort(base, (short) keysSize);
+		buffer.putShort(base + 2, (short) childrenSize);
+		int offset = base + 4;
+		for (int i = 0; i < keysSize; i++) {
+			codec.write(buffer, offset + i * codec.slotSize(), keys[i]);
+		}
+		offset += maxKeySize * codec.slotSize();
+		for (int i = 0; i < childrenSize; i++) {
+			buffer.putInt(offset + i * 4, children[i]);
+		}
+		dirty = false;
+	}
+
+	int getPage() {
+		return page;
+	}
+
+	boolean isDirty() {
+		return dirty;
+	}
+
+	void markDirty() {
+		dirty = true;
+	}
+
+	int numberOfKeys() {//retorna o numero de chaves do no
+		return keysSize;
+	}
+
+	int numberOfChildren() {//retorna o numero de filhos
+		return childrenSize;
+	}
+
+	boolean isLeaf() {
+		return childrenSize == 0;
+	}
+
+	T getKey(int index) {//retorna a key em um index no vetor de chave
+		return keys[index];
+	}
+
+	void setKey(int index, T value) {//troca a key em um index
+		keys[index] = value;
+		dirty = true;
+	}
+
+	int getChild(int index) {//retorna a pagina do filho naquele index
+		return children[index];
+	}
+
+	int lowerBound(T value) {//busca binaria: primeiro index cuja key e maior ou igual ao valor
+		int low = 0;
+		int high = keysSize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(value) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	void addKey(int index, T value) {//adiciona uma key no index informado
+		System.arraycopy(keys, index, keys, index + 1, keysSize - index);
+		keys[index] = value;
+		keysSize++;
+		dirty = true;
+	}
+
+	T removeKey(int index) {//remove uma key de acordo com o index dela
+		T value = keys[index];
+		System.arraycopy(keys, index + 1, keys, index, keysSize - index - 1);
+		keys[--keysSize] = null;
+		dirty = true;
+		return value;
+	}
+
+	void addChild(int index, int child) {//adiciona o filho no index informado
+		System.arraycopy(children, index, children, index + 1, childrenSize - index);
+		children[index] = child;
+		childrenSize++;
+		dirty = true;
+	}
+
+	int removeChild(int index) {//remove o filho em tal index
+		int value = children[index];
+		System.arraycopy(children, index + 1, children, index, childrenSize - index - 1);
+		childrenSize--;
+		dirty = true;
+		return value;
+	}
+
+	void appendFrom(PagedBNode<T> source, int keyFrom, int childFrom) {//copia as keys e filhos finais de outro no pro final deste
+		int keyCount = source.keysSize - keyFrom;
+		System.arraycopy(source.keys, keyFrom, keys, keysSize, keyCount);
+		keysSize += keyCount;
+		int childCount = source.childrenSize - childFrom;
+		if (childCount > 0) {
+			System.arraycopy(source.children, childFrom, children, childrenSize, childCount);
+			childrenSize += childCount;
+		}
+		dirty = true;
+	}
+
+	void truncate(int newKeysSize, int newChildrenSize) {//descarta as keys e filhos a partir desses tamanhos
+		Arrays.fill(keys, newKeysSize, keysSize, null);
+		keysSize = newKeysSize;
+		childrenSize = Math.min(childrenSize, newChildrenSize);
+		dirty = true;
+	}
+}
@@ -0,0 +1,436 @@
+package btree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//arvore B guardada em um arquivo: cada no ocupa uma pagina de tamanho fixo, calculado a partir da ordem,
+//e o arquivo e acessado por MappedByteBuffer. As paginas mais usadas ficam num cache LRU em memoria e as
+//alteradas sao escritas de volta quando saem do cache ou no flush(). Reabrir o arquivo so remapeia as paginas.
+//O cabecalho (raiz, tamanho e lista livre) e atualizado no mapeamento ao fim de cada insert e remove, junto
+//com as paginas que saem do cache, entao ele nunca aponta para paginas que ainda nao foram alocadas. Mesmo
+//assim so um flush() ou close() deixa o arquivo consistente: as paginas alteradas que ainda estao no cache
+//nao estao no arquivo, e depois de uma queda do processo ele pode misturar paginas novas e antigas.
+public class PagedBTree<T extends Comparable<T>> implements Closeable {
+
+	private static final int MAGIC = 0x42545047;//"BTPG"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 40;//a pagina 0 guarda o cabecalho
+	private static final int NONE = 0;//pagina 0 nunca e um no, entao serve como "nenhuma pagina"
+	private static final int SEGMENT_BYTES = 1 << 20;//o arquivo e mapeado em pedacos de ~1MB
+	public static final int DEFAULT_CACHE_PAGES = 1024;
+
+	private final int minKeySize;
+	private final int minChildrenSize;
+	private final int maxKeySize;
+	private final int maxChildrenSize;
+
+	private final KeyCodec<T> codec;
+	private final FileChannel channel;
+	private final int pageSize;
+	private final int pagesPerSegment;
+	private final ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+	private final int cachePages;//numero maximo de paginas no cache
+	private final LinkedHashMap<Integer, PagedBNode<T>> cache = new LinkedHashMap<Integer, PagedBNode<T>>(16, 0.75f, true);
+
+	private int root = NONE;
+	private int pageCount = 1;//paginas em uso no arquivo, incluindo o cabecalho
+	private int freeHead = NONE;//primeira pagina da lista de paginas livres
+	private long size = 0;
+	private boolean headerDirty = false;//root, pageCount, freeHead ou size mudaram desde o ultimo writeHeader
+
+	//pilha do caminho da raiz ate o no atual: o no e o index do filho por onde a descida seguiu
+	private final ArrayList<PagedBNode<T>> pathNodes = new ArrayList<PagedBNode<T>>();
+	private int[] pathIndexes = new int[16];
+
+	//abre o arquivo se ele existir (a ordem e o codec devem ser os mesmos de quando foi criado) ou cria um novo
+	public PagedBTree(Path file, int order, KeyCodec<T> codec) throws IOException {
+		this(file, order, codec, DEFAULT_CACHE_PAGES);
+	}
+
+	public PagedBTree(Path file, int order, KeyCodec<T> codec, int cachePages) throws IOException {
+		if (order < 1) throw new IllegalArgumentException("a ordem deve ser maior que 0");
+		//a pagina guarda o numero de keys e de filhos em shorts
+		if (2 * order + 2 > Short.MAX_VALUE)
+			throw new IllegalArgumentException("a ordem deve ser no maximo " + (Short.MAX_VALUE - 2) / 2);
+		this.minKeySize = order;
+		this.minChildrenSize = minKeySize + 1;
+		this.maxKeySize = 2 * minKeySize;
+		this.maxChildrenSize = maxKeySize + 1;
+		this.codec = codec;
+		this.cachePages = Math.max(cachePages, 1);
+		this.pageSize = Math.max(PagedBNode.pageSize(maxKeySize, maxChildrenSize, codec.slotSize()), HEADER_SIZE);
+		this.pagesPerSegment = Math.max(SEGMENT_BYTES / pageSize, 1);
+
+		boolean exists = Files.exists(file) && Files.size(file) > 0;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (exists) {
+			readHeader();
+		} else {
+			writeHeader();
+		}
+	}
+
+	public boolean insert(T value) {//metodo de inserir
+		codec.check(value);//uma key que nao cabe na pagina e recusada antes de entrar em algum no
+		if (root == NONE) {
+			PagedBNode<T> node = allocate();
+			node.addKey(0, value);
+			root = node.getPage();
+		} else {
+			PagedBNode<T> node = load(root);
+			while (!node.isLeaf()) {
+				int index = node.lowerBound(value);
+				push(node, index);
+				node = load(node.getChild(index));
+			}
+			node.addKey(node.lowerBound(value), value);
+			// sobe pelo caminho separando os nos que passaram do maximo
+			while (node.numberOfKeys() > maxKeySize) {
+				node = split(node);
+			}
+		}
+		size++;
+		headerDirty = true;
+		finishOperation();
+		return true;
+	}
+
+	//separa o no em dois e retorna o pai, que recebeu a key do meio
+	private PagedBNode<T> split(PagedBNode<T> node) {
+		int medianIndex = node.numberOfKeys() / 2;
+		T medianValue = node.getKey(medianIndex);
+
+		PagedBNode<T> right = allocate();
+		right.appendFrom(node, medianIndex + 1, medianIndex + 1);
+		node.truncate(medianIndex, medianIndex + 1);
+
+		if (pathNodes.isEmpty()) {
+			// nova raiz, a altura da arvore aumentou
+			PagedBNode<T> newRoot = allocate();
+			newRoot.addKey(0, medianValue);
+			newRoot.addChild(0, node.getPage());
+			newRoot.addChild(1, right.getPage());
+			root = newRoot.getPage();
+			return newRoot;
+		}
+		int index = pathIndexes[pathNodes.size() - 1];
+		PagedBNode<T> parent = pop();
+		parent.addKey(index, medianValue);
+		parent.addChild(index + 1, right.getPage());
+		return parent;
+	}
+
+	public T remove(T value) {//remove a key informada e retorna ela, ou null se nao existir
+		if (root == NONE) return null;
+
+		PagedBNode<T> node = load(root);
+		int index;
+		while (true) {
+			index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) break;
+			if (node.isLeaf()) {
+				finishOperation();
+				return null;
+			}
+			push(node, index);
+			node = load(node.getChild(index));
+		}
+
+		T removed;
+		if (node.isLeaf()) {
+			removed = node.removeKey(index);
+		} else {
+			// no interno: a key e trocada pela maior key da subarvore esquerda, que sai da folha
+			removed = node.getKey(index);
+			PagedBNode<T> internal = node;
+			push(node, index);
+			node = load(node.getChild(index));
+			while (!node.isLeaf()) {
+				push(node, node.numberOfChildren() - 1);
+				node = load(node.getChild(node.numberOfChildren() - 1));
+			}
+			internal.setKey(index, node.removeKey(node.numberOfKeys() - 1));
+		}
+
+		// sobe pelo caminho combinando os nos que ficaram abaixo do minimo
+		while (!pathNodes.isEmpty() && node.numberOfKeys() < minKeySize) {
+			node = combined(node);
+		}
+		PagedBNode<T> rootNode = load(root);
+		if (rootNode.numberOfKeys() == 0) {
+			// a raiz ficou vazia: a altura da arvore diminuiu
+			root = rootNode.isLeaf() ? NONE : rootNode.getChild(0);
+			free(rootNode);
+		}
+
+		size--;
+		headerDirty = true;
+		finishOperation();
+		return removed;
+	}
+
+	//pede emprestado ou combina o no com um vizinho e retorna o pai, que perdeu ou cedeu uma key
+	private PagedBNode<T> combined(PagedBNode<T> node) {
+		int index = pathIndexes[pathNodes.size() - 1];
+		PagedBNode<T> parent = pop();
+		PagedBNode<T> leftNeighbor = index > 0 ? load(parent.getChild(index - 1)) : null;
+		PagedBNode<T> rightNeighbor = index + 1 < parent.numberOfChildren() ? load(parent.getChild(index + 1)) : null;
+
+		if (rightNeighbor != null && rightNeighbor.numberOfKeys() > minKeySize) {
+			// vizinho da direita
+			node.addKey(node.numberOfKeys(), parent.getKey(index));
+			parent.setKey(index, rightNeighbor.removeKey(0));
+			if (!rightNeighbor.isLeaf()) {
+				node.addChild(node.numberOfChildren(), rightNeighbor.removeChild(0));
+			}
+		} else if (leftNeighbor != null && leftNeighbor.numberOfKeys() > minKeySize) {
+			//vizinho da esquerda
+			node.addKey(0, parent.getKey(index - 1));
+			parent.setKey(index - 1, leftNeighbor.removeKey(leftNeighbor.numberOfKeys() - 1));
+			if (!leftNeighbor.isLeaf()) {
+				node.addChild(0, leftNeighbor.removeChild(leftNeighbor.numberOfChildren() - 1));
+			}
+		} else if (rightNeighbor != null) {
+			// nao pode pedir emprestado: junta com o vizinho da direita
+			node.addKey(node.numberOfKeys(), parent.removeKey(index));
+			parent.removeChild(index + 1);
+			node.appendFrom(rightNeighbor, 0, 0);
+			free(rightNeighbor);
+		} else {
+			// junta com o vizinho da esquerda
+			leftNeighbor.addKey(leftNeighbor.numberOfKeys(), parent.removeKey(index - 1));
+			parent.removeChild(index);
+			leftNeighbor.appendFrom(node, 0, 0);
+			free(node);
+		}
+		return parent;
+	}
+
+	public boolean contains(T value) {//testa se essa key esta na arvore
+		int page = root;
+		while (page != NONE) {
+			PagedBNode<T> node = load(page);
+			int index = node.lowerBound(value);
+			if (index < node.numberOfKeys() && node.getKey(index).compareTo(value) == 0) {
+				finishOperation();
+				return true;
+			}
+			page = node.isLeaf() ? NONE : node.getChild(index);
+		}
+		finishOperation();
+		return false;
+	}
+
+	public ArrayList<T> toArrayList(String type) {//so em ordem, como no BTree
+		if (root == NONE) return null;
+		if (!type.equals("IN")) {
+			System.err.println("You can only print B trees in order!");
+		}
+		ArrayList<T> ret = new ArrayList<T>();
+		visit(root, ret);
+		finishOperation();
+		return ret;
+	}
+
+	private void visit(int page, ArrayList<T> list) {//visita em ordem
+		PagedBNode<T> node = load(page);
+		for (int i = 0; i < node.numberOfKeys(); i++) {
+			if (!node.isLeaf()) visit(node.getChild(i), list);
+			list.add(node.getKey(i));
+		}
+		if (!node.isLeaf()) visit(node.getChild(node.numberOfKeys()), list);
+	}
+
+	public long size() {//tamanho da arvore
+		return size;
+	}
+
+	public int pageSize() {//bytes por pagina
+		return pageSize;
+	}
+
+	//reseta a arvore: o arquivo mantem o tamanho, mas as paginas antigas sao descartadas e os novos nos voltam
+	//a ser escritos a partir da pagina 1, por cima delas
+	public void clear() {
+		cache.clear();
+		root = NONE;
+		pageCount = 1;
+		freeHead = NONE;
+		size = 0;
+		writeHeader();
+	}
+
+	//escreve todas as paginas alteradas e o cabecalho e forca a gravacao no disco
+	public void flush() {
+		for (PagedBNode<T> node : cache.values()) {
+			if (node.isDirty()) writePage(node);
+		}
+		writeHeader();
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		cache.clear();
+		segments.clear();
+		channel.close();
+	}
+
+	//valida a arvore
+	public boolean validate() {
+		if (root == NONE) return size == 0;
+		boolean valid = validateBNode(root, true);
+		finishOperation();
+		return valid;
+	}
+
+	private boolean validateBNode(int page, boolean isRoot) {
+		PagedBNode<T> node = load(page);
+		int keySize = node.numberOfKeys();
+		for (int i = 1; i < keySize; i++) {
+			if (node.getKey(i - 1).compareTo(node.getKey(i)) > 0) return false;
+		}
+		if (keySize > maxKeySize) return false;
+		if (!isRoot && keySize < minKeySize) return false;
+		if (node.isLeaf()) return true;
+		int childrenSize = node.numberOfChildren();
+		if (childrenSize != keySize + 1) return false;
+		if (!isRoot && childrenSize < minChildrenSize) return false;
+		for (int i = 0; i < childrenSize; i++) {
+			PagedBNode<T> child = load(node.getChild(i));
+			// as keys do filho devem ficar entre as keys vizinhas do pai
+			if (i > 0 && child.getKey(0).compareTo(node.getKey(i - 1)) < 0) return false;
+			if (i < keySize && child.getKey(child.numberOfKeys() - 1).compareTo(node.getKey(i)) > 0) return false;
+			if (!validateBNode(node.getChild(i), false)) return false;
+		}
+		return true;
+	}
+
+	//paginas
+
+	//retorna o no da pagina, lendo do arquivo se ele nao estiver no cache
+	private PagedBNode<T> load(int page) {
+		PagedBNode<T> node = cache.get(page);
+		if (node == null) {
+			node = new PagedBNode<T>(page, maxKeySize, maxChildrenSize);
+			node.read(segment(page), offset(page), codec, maxKeySize);
+			cache.put(page, node);
+		}
+		return node;
+	}
+
+	//reserva uma pagina para um novo no, reaproveitando as da lista livre
+	private PagedBNode<T> allocate() {
+		int page;
+		if (freeHead != NONE) {
+			page = freeHead;
+			freeHead = segment(page).getInt(offset(page));
+		} else {
+			page = pageCount++;
+		}
+		PagedBNode<T> node = new PagedBNode<T>(page, maxKeySize, maxChildrenSize);
+		node.markDirty();
+		cache.put(page, node);
+		return node;
+	}
+
+	//devolve a pagina do no para a lista livre
+	private void free(PagedBNode<T> node) {
+		cache.remove(node.getPage());
+		segment(node.getPage()).putInt(offset(node.getPage()), freeHead);
+		freeHead = node.getPage();
+	}
+
+	private void writePage(PagedBNode<T> node) {
+		node.write(segment(node.getPage()), offset(node.getPage()), codec, maxKeySize);
+	}
+
+	//os nos do caminho ficam no cache durante a operacao inteira; so no fim o cache volta ao tamanho maximo,
+	//escrevendo as paginas alteradas que sairem dele. O cabecalho vai junto se a operacao mudou a arvore ou
+	//se alguma pagina foi escrita
+	private void finishOperation() {
+		pathNodes.clear();
+		Iterator<Map.Entry<Integer, PagedBNode<T>>> it = cache.entrySet().iterator();
+		while (cache.size() > cachePages && it.hasNext()) {
+			PagedBNode<T> node = it.next().getValue();
+			if (node.isDirty()) {
+				writePage(node);
+				headerDirty = true;
+			}
+			it.remove();
+		}
+		if (headerDirty) writeHeader();
+	}
+
+	private void push(PagedBNode<T> node, int index) {
+		if (pathNodes.size() == pathIndexes.length) {
+			pathIndexes = Arrays.copyOf(pathIndexes, pathIndexes.length * 2);
+		}
+		pathIndexes[pathNodes.size()] = index;
+		pathNodes.add(node);
+	}
+
+	private PagedBNode<T> pop() {
+		return pathNodes.remove(pathNodes.size() - 1);
+	}
+
+	//retorna o pedaco mapeado que contem a pagina, mapeando novos pedacos (e aumentando o arquivo) quando preciso
+	private MappedByteBuffer segment(int page) {
+		int index = page / pagesPerSegment;
+		try {
+			while (segments.size() <= index) {
+				long position = (long) segments.size() * pagesPerSegment * pageSize;
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) pagesPerSegment * pageSize));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return segments.get(index);
+	}
+
+	private int offset(int page) {
+		return (page % pagesPerSegment) * pageSize;
+	}
+
+	private void writeHeader() {
+		ByteBuffer header = segment(0);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, minKeySize);
+		header.putInt(12, codec.slotSize());
+		header.putInt(16, pageSize);
+		header.putInt(20, root);
+		header.putInt(24, pageCount);
+		header.putInt(28, freeHead);
+		header.putLong(32, size);
+		headerDirty = false;
+	}
+
+	private void readHeader() throws IOException {
+		ByteBuffer header = segment(0);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+			throw new IOException("o arquivo nao e um PagedBTree");
+		if (header.getInt(8) != minKeySize || header.getInt(12) != codec.slotSize() || header.getInt(16) != pageSize)
+			throw new IOException("o arquivo foi criado com outra ordem (" + header.getInt(8) + ") ou outro codec");
+		root = header.getInt(20);
+		pageCount = header.getInt(24);
+		freeHead = header.getInt(28);
+		size = header.getLong(32);
+	}
+}
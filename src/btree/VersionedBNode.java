@@ -0,0 +1,34 @@
+package btree;
+
+//no do VersionedBTree: imutavel depois de criado, com vetores do tamanho exato das chaves e filhos.
+//Uma alteracao cria um no novo com os vetores copiados, e os nos que nao mudaram sao compartilhados
+//entre as versoes da arvore
+final class VersionedBNode<T extends Comparable<T>> {
+
+	final T[] keys;//vetor de chaves do no
+	final VersionedBNode<T>[] children;//vetor de filhos, null nas folhas
+
+	VersionedBNode(T[] keys, VersionedBNode<T>[] children) {
+		this.keys = keys;
+		this.children = children;
+	}
+
+	boolean isLeaf() {
+		return children == null;
+	}
+
+	int numberOfKeys() {//retorna o numero de chaves do no
+		return keys.length;
+	}
+
+	int lowerBound(T value) {//busca binaria: primeiro index cuja key e maior ou igual ao valor
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(value) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,428 @@
+package btree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import common.TraversalOrder;
+
+//arvore B com versoes (MVCC) por copy-on-write: os nos sao imutaveis e cada insercao ou remocao copia so os
+//nos do caminho que alterou, criando uma nova raiz que compartilha o resto da arvore com a versao anterior.
+//A raiz e o tamanho de cada versao ficam juntos em um Snapshot, publicado de uma vez em um campo volatile.
+//openSnapshot() so devolve a versao atual (O(1)), que nunca muda: uma leitura longa, como um percurso em
+//ordem, ve sempre a mesma arvore enquanto as escritas continuam, sem bloquear nenhuma delas.
+//Nada guarda as versoes antigas alem dos snapshots abertos, entao o GC recolhe os nos de uma versao assim
+//que o ultimo snapshot que a usa deixa de ser referenciado.
+//Mesma ordem e mesmas regras do BTree (chaves repetidas sao aceitas); as escritas sao serializadas pelo
+//monitor da arvore
+public class VersionedBTree<T extends Comparable<T>> {
+
+	private final int minKeySize;
+	private final int maxKeySize;
+
+	private volatile Snapshot<T> current;//versao atual, trocada inteira a cada escrita
+
+	//construtor padrao que seta a arvore pra 2-3
+	public VersionedBTree() {
+		this(1);
+	}
+
+	//construtor que cria uma arvore de acordo com a ordem informada
+	public VersionedBTree(int order) {
+		if (order < 1)
+			throw new IllegalArgumentException("A ordem deve ser pelo menos 1: " + order);
+		this.minKeySize = order;
+		this.maxKeySize = 2 * order;
+		this.current = new Snapshot<T>(null, 0, 0, minKeySize, maxKeySize);
+	}
+
+	//versao atual da arvore, somente leitura; escritas posteriores nao aparecem nela
+	public Snapshot<T> openSnapshot() {
+		return current;
+	}
+
+	//insere a chave; como no BTree, sempre retorna true
+	public synchronized boolean insert(T value) {
+		Snapshot<T> version = current;
+		VersionedBNode<T> root = version.root;
+		if (root == null) {
+			root = leaf(newKeys(value));
+		} else {
+			root = insert(root, value);
+			if (root.numberOfKeys() > maxKeySize) {
+				// a raiz estourou: nova raiz, a altura da arvore aumentou
+				VersionedBNode<T>[] halves = split(root);
+				root = new VersionedBNode<T>(newKeys(root.keys[root.numberOfKeys() / 2]), halves);
+			}
+		}
+		publish(version, root, version.size + 1);
+		return true;
+	}
+
+	//remove uma ocorrencia da key e retorna ela, ou null se ela nao esta na arvore
+	public synchronized T remove(T value) {
+		Snapshot<T> version = current;
+		if (version.root == null)
+			return null;
+		VersionedBNode<T> root = remove(version.root, value);
+		if (root == version.root)
+			return null;
+		if (root.numberOfKeys() == 0) {
+			//a raiz ficou vazia: a arvore diminuiu de altura ou acabou
+			root = root.isLeaf() ? null : root.children[0];
+		}
+		publish(version, root, version.size - 1);
+		return value;
+	}
+
+	//remove todas as keys; snapshots ja abertos continuam com as deles
+	public synchronized void clear() {
+		publish(current, null, 0);
+	}
+
+	private void publish(Snapshot<T> previous, VersionedBNode<T> root, int size) {
+		current = new Snapshot<T>(root, size, previous.version + 1, minKeySize, maxKeySize);
+	}
+
+	//copia o caminho da descida e retorna o novo no, que pode ter uma key a mais que o maximo: quem
+	//divide o no e o pai, que tambem e copiado
+	private VersionedBNode<T> insert(VersionedBNode<T> node, T value) {
+		int index = node.lowerBound(value);
+		if (node.isLeaf())
+			return leaf(insertAt(node.keys, index, value));
+		VersionedBNode<T> child = insert(node.children[index], value);
+		if (child.numberOfKeys() <= maxKeySize)
+			return new VersionedBNode<T>(node.keys, replaceAt(node.children, index, child));
+		// o filho estourou: a key do meio sobe e as duas metades ocupam o lugar dele
+		VersionedBNode<T>[] halves = split(child);
+		VersionedBNode<T>[] children = insertAt(replaceAt(node.children, index, halves[0]), index + 1, halves[1]);
+		return new VersionedBNode<T>(insertAt(node.keys, index, child.keys[child.numberOfKeys() / 2]), children);
+	}
+
+	//metades esquerda e direita de um no que estourou, sem a key do meio
+	private VersionedBNode<T>[] split(VersionedBNode<T> node) {
+		int middle = node.numberOfKeys() / 2;
+		VersionedBNode<T> left = new VersionedBNode<T>(Arrays.copyOfRange(node.keys, 0, middle),
+				node.isLeaf() ? null : Arrays.copyOfRange(node.children, 0, middle + 1));
+		VersionedBNode<T> right = new VersionedBNode<T>(Arrays.copyOfRange(node.keys, middle + 1, node.numberOfKeys()),
+				node.isLeaf() ? null : Arrays.copyOfRange(node.children, middle + 1, node.children.length));
+		return newChildren(left, right);
+	}
+
+	//retorna o proprio node quando a key nao esta na subarvore, para nada ser copiado. O novo no pode ter uma
+	//key a menos que o minimo: quem corrige e o pai
+	private VersionedBNode<T> remove(VersionedBNode<T> node, T value) {
+		int index = node.lowerBound(value);
+		boolean found = index < node.numberOfKeys() && node.keys[index].compareTo(value) == 0;
+		if (node.isLeaf())
+			return found ? leaf(removeAt(node.keys, index)) : node;
+		if (found) {
+			// no interno: a maior key da subarvore da esquerda toma o lugar da removida
+			VersionedBNode<T> greatest = node.children[index];
+			while (!greatest.isLeaf())
+				greatest = greatest.children[greatest.children.length - 1];
+			T[] keys = node.keys.clone();
+			keys[index] = greatest.keys[greatest.numberOfKeys() - 1];
+			return fixChild(keys, node.children, index, removeGreatest(node.children[index]));
+		}
+		VersionedBNode<T> child = remove(node.children[index], value);
+		if (child == node.children[index])
+			return node;
+		return fixChild(node.keys, node.children, index, child);
+	}
+
+	//remove a maior key da subarvore
+	private VersionedBNode<T> removeGreatest(VersionedBNode<T> node) {
+		if (node.isLeaf())
+			return leaf(Arrays.copyOf(node.keys, node.numberOfKeys() - 1));
+		int last = node.children.length - 1;
+		return fixChild(node.keys, node.children, last, removeGreatest(node.children[last]));
+	}
+
+	//cria o pai com o filho index trocado pelo novo; se o filho ficou abaixo do minimo, pega uma key de um
+	//vizinho (que tambem e copiado) ou junta os dois com a key do pai entre eles
+	private VersionedBNode<T> fixChild(T[] keys, VersionedBNode<T>[] children, int index, VersionedBNode<T> child) {
+		if (child.numberOfKeys() >= minKeySize)
+			return new VersionedBNode<T>(keys, replaceAt(children, index, child));
+		boolean leaf = child.isLeaf();
+		if (index > 0 && children[index - 1].numberOfKeys() > minKeySize) {
+			//vizinho da esquerda: a maior key dele sobe e a key do pai desce
+			VersionedBNode<T> left = children[index - 1];
+			int last = left.numberOfKeys() - 1;
+			VersionedBNode<T> newLeft = new VersionedBNode<T>(Arrays.copyOf(left.keys, last),
+					leaf ? null : Arrays.copyOf(left.children, last + 1));
+			VersionedBNode<T> newChild = new VersionedBNode<T>(insertAt(child.keys, 0, keys[index - 1]),
+					leaf ? null : insertAt(child.children, 0, left.children[last + 1]));
+			T[] newKeys = keys.clone();
+			newKeys[index - 1] = left.keys[last];
+			VersionedBNode<T>[] newChildren = children.clone();
+			newChildren[index - 1] = newLeft;
+			newChildren[index] = newChild;
+			return new VersionedBNode<T>(newKeys, newChildren);
+		}
+		if (index < children.length - 1 && children[index + 1].numberOfKeys() > minKeySize) {
+			//vizinho da direita: a menor key dele sobe e a key do pai desce
+			VersionedBNode<T> right = children[index + 1];
+			VersionedBNode<T> newRight = new VersionedBNode<T>(removeAt(right.keys, 0),
+					leaf ? null : removeAt(right.children, 0));
+			VersionedBNode<T> newChild = new VersionedBNode<T>(insertAt(child.keys, child.numberOfKeys(), keys[index]),
+					leaf ? null : insertAt(child.children, child.children.length, right.children[0]));
+			T[] newKeys = keys.clone();
+			newKeys[index] = right.keys[0];
+			VersionedBNode<T>[] newChildren = children.clone();
+			newChildren[index] = newChild;
+			newChildren[index + 1] = newRight;
+			return new VersionedBNode<T>(newKeys, newChildren);
+		}
+		//nao pode pedir emprestado: junta com um vizinho e a key do pai entre os dois sai do pai
+		int separator = index > 0 ? index - 1 : index;
+		VersionedBNode<T> left = index > 0 ? children[index - 1] : child;
+		VersionedBNode<T> right = index > 0 ? child : children[index + 1];
+		VersionedBNode<T> merged = new VersionedBNode<T>(concat(left.keys, keys[separator], right.keys),
+				leaf ? null : concat(left.children, right.children));
+		VersionedBNode<T>[] newChildren = removeAt(children, separator + 1);
+		newChildren[separator] = merged;
+		return new VersionedBNode<T>(removeAt(keys, separator), newChildren);
+	}
+
+	//atalhos para a versao atual
+
+	public boolean contains(T value) {
+		return current.contains(value);
+	}
+
+	public int size() {
+		return current.size();
+	}
+
+	public Iterator<T> iterator(TraversalOrder order) {
+		return current.iterator(order);
+	}
+
+	public Iterable<T> traverse(TraversalOrder order) {
+		return current.traverse(order);
+	}
+
+	public Stream<T> stream(TraversalOrder order) {
+		return current.stream(order);
+	}
+
+	public ArrayList<T> toArrayList(String type) {
+		return current.toArrayList(type);
+	}
+
+	public boolean validate() {
+		return current.validate();
+	}
+
+	//uma versao da arvore: a raiz e o tamanho dela, que nunca mudam
+	public static final class Snapshot<T extends Comparable<T>> {
+		private final VersionedBNode<T> root;
+		private final int size;
+		private final long version;//numero da versao, comecando em 0 na arvore vazia
+		private final int minKeySize;
+		private final int maxKeySize;
+
+		private Snapshot(VersionedBNode<T> root, int size, long version, int minKeySize, int maxKeySize) {
+			this.root = root;
+			this.size = size;
+			this.version = version;
+			this.minKeySize = minKeySize;
+			this.maxKeySize = maxKeySize;
+		}
+
+		public long version() {
+			return version;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public boolean contains(T value) {//testa se essa key esta nesta versao
+			VersionedBNode<T> node = root;
+			while (node != null) {
+				int index = node.lowerBound(value);
+				if (index < node.numberOfKeys() && node.keys[index].compareTo(value) == 0)
+					return true;
+				node = node.isLeaf() ? null : node.children[index];
+			}
+			return false;
+		}
+
+		//arvores B so sao percorridas em ordem
+		public Iterator<T> iterator(TraversalOrder order) {
+			if (order != TraversalOrder.IN)
+				throw new IllegalArgumentException("You can only print B trees in order!");
+			return new InOrderIterator<T>(root);
+		}
+
+		public Iterable<T> traverse(final TraversalOrder order) {//o mesmo percurso para usar em um for
+			return new Iterable<T>() {
+				@Override
+				public Iterator<T> iterator() {
+					return Snapshot.this.iterator(order);
+				}
+			};
+		}
+
+		public Stream<T> stream(TraversalOrder order) {
+			return StreamSupport.stream(Spliterators.spliterator(iterator(order), size,
+					Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+		}
+
+		//mesmo contrato do toArrayList do BTree, mas devolve uma lista vazia para a arvore vazia
+		public ArrayList<T> toArrayList(String type) {
+			ArrayList<T> ret = new ArrayList<T>(size);
+			if (TraversalOrder.parse(type) != TraversalOrder.IN) {
+				System.err.println("You can only print B trees in order!");
+				return ret;
+			}
+			for (T value : traverse(TraversalOrder.IN)) {
+				ret.add(value);
+			}
+			return ret;
+		}
+
+		//valida a versao: keys em ordem e dentro dos limites do pai, numero de keys e filhos de cada no,
+		//todas as folhas na mesma profundidade e o tamanho
+		public boolean validate() {
+			if (root == null)
+				return size == 0;
+			if (!root.isLeaf() && root.numberOfKeys() < 1)
+				return false;
+			int[] count = new int[1];
+			return validate(root, null, null, true, count) >= 0 && count[0] == size;
+		}
+
+		//retorna a altura da subarvore ou -1 se alguma propriedade foi violada
+		private int validate(VersionedBNode<T> node, T min, T max, boolean isRoot, int[] count) {
+			int keys = node.numberOfKeys();
+			if (keys > maxKeySize || (!isRoot && keys < minKeySize))
+				return -1;
+			for (int i = 0; i < keys; i++) {
+				T key = node.keys[i];
+				if (i > 0 && node.keys[i - 1].compareTo(key) > 0) return -1;
+				if (min != null && key.compareTo(min) < 0) return -1;
+				if (max != null && key.compareTo(max) > 0) return -1;
+			}
+			count[0] += keys;
+			if (node.isLeaf())
+				return 1;
+			if (node.children.length != keys + 1)
+				return -1;
+			int height = -1;
+			for (int i = 0; i <= keys; i++) {
+				T low = i == 0 ? min : node.keys[i - 1];
+				T high = i == keys ? max : node.keys[i];
+				int childHeight = validate(node.children[i], low, high, false, count);
+				if (childHeight < 0 || (height >= 0 && childHeight != height))
+					return -1;
+				height = childHeight;
+			}
+			return height + 1;
+		}
+	}
+
+	//iterador em ordem: a pilha guarda os nos do caminho e, para cada um, o index da proxima key a devolver
+	private static class InOrderIterator<T extends Comparable<T>> implements Iterator<T> {
+		@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+		private VersionedBNode<T>[] nodes = new VersionedBNode[16];
+		private int[] indexes = new int[16];
+		private int depth = 0;
+
+		InOrderIterator(VersionedBNode<T> root) {
+			if (root != null) pushLeftPath(root);
+		}
+
+		private void pushLeftPath(VersionedBNode<T> node) {//empilha o no e os primeiros filhos ate a folha
+			while (true) {
+				if (depth == nodes.length) {
+					nodes = Arrays.copyOf(nodes, depth * 2);
+					indexes = Arrays.copyOf(indexes, depth * 2);
+				}
+				nodes[depth] = node;
+				indexes[depth++] = 0;
+				if (node.isLeaf()) return;
+				node = node.children[0];
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return depth > 0;
+		}
+
+		@Override
+		public T next() {
+			if (depth == 0) throw new NoSuchElementException();
+			VersionedBNode<T> node = nodes[depth - 1];
+			int index = indexes[depth - 1]++;
+			T value = node.keys[index];
+			if (index + 1 == node.numberOfKeys()) {
+				// ultima key do no: o no sai da pilha e, se tiver, a ultima subarvore entra
+				nodes[--depth] = null;
+			}
+			if (!node.isLeaf()) pushLeftPath(node.children[index + 1]);
+			return value;
+		}
+	}
+
+	//copias dos vetores com uma posicao a mais, a menos ou trocada; os vetores de um no nunca sao alterados
+
+	private static <E> E[] insertAt(E[] array, int index, E value) {
+		E[] copy = Arrays.copyOf(array, array.length + 1);
+		System.arraycopy(array, index, copy, index + 1, array.length - index);
+		copy[index] = value;
+		return copy;
+	}
+
+	private static <E> E[] removeAt(E[] array, int index) {
+		E[] copy = Arrays.copyOf(array, array.length - 1);
+		System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+		return copy;
+	}
+
+	private static <E> E[] replaceAt(E[] array, int index, E value) {
+		E[] copy = array.clone();
+		copy[index] = value;
+		return copy;
+	}
+
+	private static <E> E[] concat(E[] left, E[] right) {
+		E[] copy = Arrays.copyOf(left, left.length + right.length);
+		System.arraycopy(right, 0, copy, left.length, right.length);
+		return copy;
+	}
+
+	private static <E> E[] concat(E[] left, E middle, E[] right) {
+		E[] copy = Arrays.copyOf(left, left.length + 1 + right.length);
+		copy[left.length] = middle;
+		System.arraycopy(right, 0, copy, left.length + 1, right.length);
+		return copy;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	private T[] newKeys(T value) {
+		T[] keys = (T[]) new Comparable[1];
+		keys[0] = value;
+		return keys;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	private VersionedBNode<T>[] newChildren(VersionedBNode<T> left, VersionedBNode<T> right) {
+		VersionedBNode<T>[] children = new VersionedBNode[2];
+		children[0] = left;
+		children[1] = right;
+		return children;
+	}
+
+	private VersionedBNode<T> leaf(T[] keys) {
+		return new VersionedBNode<T>(keys, null);
+	}
+}
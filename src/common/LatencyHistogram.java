@@ -0,0 +1,92 @@
+package common;
+
+import java.util.Arrays;
+
+//histograma de latencias em nanossegundos com baldes log-lineares: cada potencia de 2 e dividida em 16
+//baldes iguais, entao qualquer valor e guardado com erro de no maximo 1/16 (~6%) e o vetor tem tamanho
+//fixo, sem alocacao por registro. Os percentis sao o limite superior do balde, nunca acima do maximo visto.
+//Nao e thread-safe: cada thread deve ter o seu
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[64 * SUB_BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+
+	public LatencyHistogram() {
+	}
+
+	//copia os registros de outro histograma, como estao agora
+	public LatencyHistogram(LatencyHistogram other) {
+		System.arraycopy(other.counts, 0, counts, 0, counts.length);
+		count = other.count;
+		total = other.total;
+		max = other.max;
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts[bucket(nanos)]++;
+		count++;
+		total += nanos;
+		if (nanos > max) max = nanos;
+	}
+
+	//valores ate 15 tem balde proprio; acima disso o expoente escolhe a faixa e os 4 bits seguintes o balde
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	//maior valor que cai no balde
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	//valor abaixo do qual estao pelo menos essa fracao (entre 0 e 1) dos registros
+	public long percentile(double fraction) {
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotal() {//soma de todas as latencias
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double mean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d registros, p50 %d ns, p99 %d ns, p999 %d ns, max %d ns", count, percentile(0.5),
+				percentile(0.99), percentile(0.999), max);
+	}
+}
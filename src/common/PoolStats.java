@@ -0,0 +1,81 @@
+package common;
+
+//contadores do pool de nos de uma arvore: quantos nos foram pedidos, quantos vieram do pool em vez de
+//um new, e quantos nos removidos foram guardados ou descartados por o pool estar cheio
+public class PoolStats {
+	private final int capacity;//maximo de nos guardados
+	private int pooled = 0;//nos guardados agora
+	private long requests = 0;
+	private long hits = 0;
+	private long recycled = 0;
+	private long discarded = 0;
+
+	public PoolStats(int capacity) {
+		this.capacity = capacity;
+	}
+
+	//copia os contadores de outro PoolStats, como estao agora
+	public PoolStats(PoolStats other) {
+		this.capacity = other.capacity;
+		this.pooled = other.pooled;
+		this.requests = other.requests;
+		this.hits = other.hits;
+		this.recycled = other.recycled;
+		this.discarded = other.discarded;
+	}
+
+	//registra um pedido de no; hit indica se ele saiu do pool
+	public void recordRequest(boolean hit) {
+		requests++;
+		if (hit) {
+			hits++;
+			pooled--;
+		}
+	}
+
+	//registra um no removido e diz se ele deve ser guardado, ou seja, se ainda cabe no pool
+	public boolean recordRelease() {
+		if (pooled >= capacity) {
+			discarded++;
+			return false;
+		}
+		recycled++;
+		pooled++;
+		return true;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getPooled() {
+		return pooled;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getRecycled() {
+		return recycled;
+	}
+
+	public long getDiscarded() {
+		return discarded;
+	}
+
+	//fracao dos pedidos atendidos pelo pool, entre 0 e 1
+	public double hitRate() {
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("pool: %d/%d nos, %d pedidos, %.1f%% do pool, %d reciclados, %d descartados",
+				pooled, capacity, requests, 100 * hitRate(), recycled, discarded);
+	}
+}
@@ -0,0 +1,16 @@
+package common;
+
+//ordens de percurso das arvores
+public enum TraversalOrder {
+	PRE, //pre-ordem: no, esquerda, direita
+	IN, //em ordem: esquerda, no, direita (chaves ordenadas)
+	POS; //pos-ordem: esquerda, direita, no
+
+	//converte o texto usado pelo toArrayList e pelos comandos; qualquer outro texto e tratado como em ordem,
+	//como o toArrayList sempre fez
+	public static TraversalOrder parse(String type) {
+		if (type.equals("PRE")) return PRE;
+		if (type.equals("POS")) return POS;
+		return IN;
+	}
+}
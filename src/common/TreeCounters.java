@@ -0,0 +1,91 @@
+package common;
+
+//contadores do trabalho feito por uma arvore: operacoes (insercao, remocao e busca), comparacoes de chaves
+//nessas operacoes, rotacoes, iteracoes dos fixups da rubro-negra e splits e combined da arvore B.
+//So contam com a JVM iniciada com -Dtrees.counters=true: as arvores testam ENABLED antes de cada contagem
+//e, como ele e static final, com os contadores desligados o JIT remove esses testes e o custo e nulo.
+//Nao e thread-safe, como as arvores que o usam
+public final class TreeCounters {
+	public static final boolean ENABLED = Boolean.getBoolean("trees.counters");
+
+	private long operations = 0;
+	private long comparisons = 0;
+	private long rotations = 0;
+	private long fixups = 0;//iteracoes dos lacos de insertFixup e removeFixup
+	private long splits = 0;//nos divididos
+	private long combines = 0;//nos completados com uma key do vizinho ou juntados com ele
+
+	public void operation() {
+		operations++;
+	}
+
+	public void comparison() {
+		comparisons++;
+	}
+
+	public void comparisons(int count) {
+		comparisons += count;
+	}
+
+	public void rotation() {
+		rotations++;
+	}
+
+	public void fixup() {
+		fixups++;
+	}
+
+	public void split() {
+		splits++;
+	}
+
+	public void combine() {
+		combines++;
+	}
+
+	public long getOperations() {
+		return operations;
+	}
+
+	public long getComparisons() {
+		return comparisons;
+	}
+
+	public long getRotations() {
+		return rotations;
+	}
+
+	public long getFixups() {
+		return fixups;
+	}
+
+	public long getSplits() {
+		return splits;
+	}
+
+	public long getCombines() {
+		return combines;
+	}
+
+	//media de comparacoes por operacao
+	public double comparisonsPerOperation() {
+		return operations == 0 ? 0 : (double) comparisons / operations;
+	}
+
+	public void reset() {
+		operations = 0;
+		comparisons = 0;
+		rotations = 0;
+		fixups = 0;
+		splits = 0;
+		combines = 0;
+	}
+
+	@Override
+	public String toString() {
+		if (!ENABLED)
+			return "contadores desligados (-Dtrees.counters=true liga)";
+		return String.format("%d operacoes, %d comparacoes (%.1f por operacao), %d rotacoes, %d fixups, %d splits, "
+				+ "%d combined", operations, comparisons, comparisonsPerOperation(), rotations, fixups, splits, combines);
+	}
+}
@@ -0,0 +1,99 @@
+package common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Threshold;
+
+//evento do Java Flight Recorder para uma operacao de arvore (insert, remove, search, traverse ou copy), para
+//operacoes lentas aparecerem na gravacao ao lado de GC e I/O. So operacoes acima do threshold sao gravadas:
+//1 ms por padrao, que pode ser mudado na configuracao da gravacao, por exemplo
+//  jfr configure --input default.jfc +trees.TreeOperation#threshold=100us --output arvores.jfc
+//Sem gravacao ativa start() nem cria o evento (o JIT nao consegue eliminar essa alocacao nas operacoes das
+//arvores) e abaixo do threshold o evento nao preenche campos e nao e gravado
+@Name("trees.TreeOperation")
+@Label("Tree Operation")
+@Category("Trees")
+@Description("Operacao em uma arvore AVL, rubro-negra ou B que passou do threshold")
+@Threshold("1 ms")
+public class TreeOperationEvent extends Event {
+	//evento devolvido por start() quando nao ha gravacao; nunca e iniciado nem gravado
+	private static final TreeOperationEvent DISABLED = new TreeOperationEvent();
+	//se alguma gravacao do JFR esta rodando, atualizado pelo listener abaixo
+	private static volatile boolean recording = false;
+
+	static {
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			@Override
+			public void recorderInitialized(FlightRecorder recorder) {
+				updateRecording(recorder);
+			}
+
+			@Override
+			public void recordingStateChanged(Recording changed) {
+				updateRecording(FlightRecorder.getFlightRecorder());
+			}
+		});
+	}
+
+	private static void updateRecording(FlightRecorder recorder) {
+		boolean running = false;
+		for (Recording r : recorder.getRecordings()) {
+			if (r.getState() == RecordingState.RUNNING) running = true;
+		}
+		recording = running;
+	}
+
+	@Label("Tree")
+	public String tree;//AVL, RB ou BT
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Key Size")
+	@Description("Tamanho da chave em caracteres, ou -1 se ela nao e texto ou a operacao nao tem chave")
+	public int keySize;
+
+	@Label("Depth")
+	@Description("Nos visitados na descida; nos percursos e copias, a altura da arvore")
+	public int depth;
+
+	@Label("Restructurings")
+	@Description("Rotacoes, iteracoes de fixup, splits e combined feitos pela operacao")
+	public int restructurings;
+
+	@Label("Tree Size")
+	@Description("Chaves na arvore ao final da operacao")
+	public int treeSize;
+
+	//comeca a medir uma operacao
+	public static TreeOperationEvent start() {
+		if (!recording)
+			return DISABLED;
+		TreeOperationEvent event = new TreeOperationEvent();
+		event.begin();
+		return event;
+	}
+
+	//termina a medicao e grava o evento se ele passou do threshold; os campos so sao preenchidos nesse caso
+	public void finish(String tree, String operation, Object key, int depth, int restructurings, int treeSize) {
+		if (this == DISABLED)
+			return;
+		end();
+		if (!shouldCommit())
+			return;
+		this.tree = tree;
+		this.operation = operation;
+		this.keySize = key instanceof CharSequence ? ((CharSequence) key).length() : -1;
+		this.depth = depth;
+		this.restructurings = restructurings;
+		this.treeSize = treeSize;
+		commit();
+	}
+}
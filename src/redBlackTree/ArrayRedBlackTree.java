@@ -0,0 +1,540 @@
+package redBlackTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import common.TraversalOrder;
+
+//arvore rubro-negra com os nos guardados em vetores paralelos de tipos primitivos: um no e so um indice int,
+//as chaves ficam num vetor, as cores num vetor de byte e os filhos, o pai e o tamanho num vetor de int.
+//Nao ha um objeto por no, entao nao ha cabecalho nem ponteiros de 8 bytes, e nos vizinhos ficam perto na memoria.
+//Os vetores sao divididos em blocos de tamanho fixo: crescer e so alocar mais um bloco, sem copiar nada.
+//Slots de nos removidos vao para uma lista livre e sao reaproveitados nas proximas insercoes.
+//Chaves repetidas viram nos separados, como no RedBlackTree
+public class ArrayRedBlackTree<T extends Comparable<T>> {
+
+	private static final byte BLACK = 0;
+	private static final byte RED = 1;
+	private static final int NIL = 0;//o slot 0 e o no nulo, filho de todas as folhas e pai da raiz
+
+	private static final int CHUNK_BITS = 13;//cada bloco tem 8192 slots
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	//os campos int de um no ficam lado a lado em links, na mesma linha de cache: esquerdo, direito, pai e
+	//tamanho da subarvore (que substitui numLeft e numRight, pois eles podem ser calculados a partir dele)
+	private static final int LEFT = 0;
+	private static final int RIGHT = 1;//nos slots livres, guarda o proximo slot da lista livre
+	private static final int PARENT = 2;
+	private static final int SIZE = 3;
+	private static final int FIELDS = 4;
+
+	private T[][] keys;
+	private int[][] links;
+	private byte[][] color;
+
+	private int chunks = 0;//blocos alocados
+	private int used = 0;//slots que ja foram usados alguma vez; os seguintes nunca foram tocados
+	private int freeHead = NIL;//primeiro slot da lista livre
+	private int root = NIL;
+
+	public ArrayRedBlackTree() {
+		clear();
+	}
+
+	//descarta todos os nos e volta a ter um unico bloco
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	public void clear() {
+		keys = (T[][]) new Comparable[1][];
+		links = new int[1][];
+		color = new byte[1][];
+		chunks = 0;
+		used = 0;
+		freeHead = NIL;
+		grow();
+		used = 1;//o slot do no nulo: preto, tamanho 0
+		root = NIL;
+	}
+
+	//aloca mais um bloco em cada vetor; so o vetor de blocos e copiado, e ele e pequeno
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	private void grow() {
+		if (chunks == keys.length) {
+			int length = chunks * 2;
+			keys = Arrays.copyOf(keys, length);
+			links = Arrays.copyOf(links, length);
+			color = Arrays.copyOf(color, length);
+		}
+		keys[chunks] = (T[]) new Comparable[CHUNK_SIZE];
+		links[chunks] = new int[CHUNK_SIZE * FIELDS];
+		color[chunks] = new byte[CHUNK_SIZE];
+		chunks++;
+	}
+
+	//pega um slot da lista livre, ou o proximo nunca usado, e o prepara como um no vermelho sem filhos
+	private int allocate(T key) {
+		int node;
+		if (freeHead != NIL) {
+			node = freeHead;
+			freeHead = right(node);
+		} else {
+			if (used == chunks << CHUNK_BITS) grow();
+			node = used++;
+		}
+		setKey(node, key);
+		setLeft(node, NIL);
+		setRight(node, NIL);
+		setParent(node, NIL);
+		setSize(node, 1);
+		setColor(node, RED);
+		return node;
+	}
+
+	//devolve o slot para a lista livre
+	private void release(int node) {
+		setKey(node, null);
+		setRight(node, freeHead);
+		freeHead = node;
+	}
+
+	//acesso aos campos de um no: o indice alto escolhe o bloco e o baixo a posicao dentro dele
+	private T key(int node) { return keys[node >>> CHUNK_BITS][node & CHUNK_MASK]; }
+
+	private int left(int node) { return links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + LEFT]; }
+
+	private int right(int node) { return links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + RIGHT]; }
+
+	private int parent(int node) { return links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + PARENT]; }
+
+	private int size(int node) { return links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + SIZE]; }
+
+	private byte color(int node) { return color[node >>> CHUNK_BITS][node & CHUNK_MASK]; }
+
+	private void setKey(int node, T value) { keys[node >>> CHUNK_BITS][node & CHUNK_MASK] = value; }
+
+	private void setLeft(int node, int value) { links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + LEFT] = value; }
+
+	private void setRight(int node, int value) { links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + RIGHT] = value; }
+
+	private void setParent(int node, int value) { links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + PARENT] = value; }
+
+	private void setSize(int node, int value) { links[node >>> CHUNK_BITS][(node & CHUNK_MASK) * FIELDS + SIZE] = value; }
+
+	private void setColor(int node, byte value) { color[node >>> CHUNK_BITS][node & CHUNK_MASK] = value; }
+
+	//recalcula o tamanho de um no a partir dos filhos
+	private void updateSize(int node) {
+		setSize(node, size(left(node)) + size(right(node)) + 1);
+	}
+
+	//troca a ligacao do pai de old (ou a raiz) para replacement
+	private void replaceChild(int old, int replacement) {
+		int p = parent(old);
+		if (p == NIL)
+			root = replacement;
+		else if (left(p) == old)
+			setLeft(p, replacement);
+		else
+			setRight(p, replacement);
+	}
+
+	//rotacao a esquerda em x
+	private void leftRotate(int x) {
+		int y = right(x);
+		setRight(x, left(y));
+		if (left(y) != NIL)
+			setParent(left(y), x);
+		setParent(y, parent(x));
+		replaceChild(x, y);
+		setLeft(y, x);
+		setParent(x, y);
+		//y fica com a subarvore que era de x
+		setSize(y, size(x));
+		updateSize(x);
+	}
+
+	//rotacao a direita em y - simetrica a rotacao a esquerda
+	private void rightRotate(int y) {
+		int x = left(y);
+		setLeft(y, right(x));
+		if (right(x) != NIL)
+			setParent(right(x), y);
+		setParent(x, parent(y));
+		replaceChild(y, x);
+		setRight(x, y);
+		setParent(y, x);
+		setSize(x, size(y));
+		updateSize(y);
+	}
+
+	//insere a chave; chaves iguais vao para a direita
+	public void insert(T key) {
+		int y = NIL;
+		int x = root;
+		while (x != NIL) {
+			y = x;
+			setSize(x, size(x) + 1);
+			x = key.compareTo(key(x)) < 0 ? left(x) : right(x);
+		}
+		int z = allocate(key);
+		setParent(z, y);
+		if (y == NIL)
+			root = z;
+		else if (key.compareTo(key(y)) < 0)
+			setLeft(y, z);
+		else
+			setRight(y, z);
+		insertFixup(z);
+	}
+
+	//ajuste de violacoes depois da insercao, como no RedBlackTree
+	private void insertFixup(int z) {
+		while (color(parent(z)) == RED) {
+			int p = parent(z);
+			int g = parent(p);
+			if (p == left(g)) {
+				int y = right(g);//tio de z
+				if (color(y) == RED) {
+					setColor(p, BLACK);
+					setColor(y, BLACK);
+					setColor(g, RED);
+					z = g;
+				} else {
+					if (z == right(p)) {
+						z = p;
+						leftRotate(z);
+						p = parent(z);
+					}
+					setColor(p, BLACK);
+					setColor(g, RED);
+					rightRotate(g);
+				}
+			} else {
+				int y = left(g);
+				if (color(y) == RED) {
+					setColor(p, BLACK);
+					setColor(y, BLACK);
+					setColor(g, RED);
+					z = g;
+				} else {
+					if (z == left(p)) {
+						z = p;
+						rightRotate(z);
+						p = parent(z);
+					}
+					setColor(p, BLACK);
+					setColor(g, RED);
+					leftRotate(g);
+				}
+			}
+		}
+		setColor(root, BLACK);
+	}
+
+	//remove uma ocorrencia da chave; retorna false se ela nao existe
+	public boolean remove(T key) {
+		int z = find(key);
+		if (z == NIL)
+			return false;
+		removeNode(z);
+		return true;
+	}
+
+	private void removeNode(int z) {
+		//y e o no que sai da arvore: o proprio z ou o seu sucessor
+		int y = left(z) == NIL || right(z) == NIL ? z : minimum(right(z));
+		int x = left(y) != NIL ? left(y) : right(y);
+
+		//todos os ancestrais de y perdem um no
+		for (int p = parent(y); p != NIL; p = parent(p))
+			setSize(p, size(p) - 1);
+
+		setParent(x, parent(y));//pode ser o no nulo, que guarda o pai para o removeFixup
+		replaceChild(y, x);
+		if (y != z)
+			setKey(z, key(y));
+		if (color(y) == BLACK)
+			removeFixup(x);
+		release(y);
+	}
+
+	//ajuste de violacoes depois da remocao, como no RedBlackTree
+	private void removeFixup(int x) {
+		while (x != root && color(x) == BLACK) {
+			int p = parent(x);
+			if (x == left(p)) {
+				int w = right(p);
+				if (color(w) == RED) {
+					setColor(w, BLACK);
+					setColor(p, RED);
+					leftRotate(p);
+					w = right(p);
+				}
+				if (color(left(w)) == BLACK && color(right(w)) == BLACK) {
+					setColor(w, RED);
+					x = p;
+				} else {
+					if (color(right(w)) == BLACK) {
+						setColor(left(w), BLACK);
+						setColor(w, RED);
+						rightRotate(w);
+						w = right(p);
+					}
+					setColor(w, color(p));
+					setColor(p, BLACK);
+					setColor(right(w), BLACK);
+					leftRotate(p);
+					x = root;
+				}
+			} else {
+				int w = left(p);
+				if (color(w) == RED) {
+					setColor(w, BLACK);
+					setColor(p, RED);
+					rightRotate(p);
+					w = left(p);
+				}
+				if (color(right(w)) == BLACK && color(left(w)) == BLACK) {
+					setColor(w, RED);
+					x = p;
+				} else {
+					if (color(left(w)) == BLACK) {
+						setColor(right(w), BLACK);
+						setColor(w, RED);
+						leftRotate(w);
+						w = left(p);
+					}
+					setColor(w, color(p));
+					setColor(p, BLACK);
+					setColor(left(w), BLACK);
+					rightRotate(p);
+					x = root;
+				}
+			}
+		}
+		setColor(x, BLACK);
+	}
+
+	//indice do no com a chave, ou NIL
+	private int find(T key) {
+		int x = root;
+		while (x != NIL) {
+			int cmp = key.compareTo(key(x));
+			if (cmp == 0)
+				return x;
+			x = cmp < 0 ? left(x) : right(x);
+		}
+		return NIL;
+	}
+
+	public boolean contains(T key) {
+		return find(key) != NIL;
+	}
+
+	private int minimum(int node) {
+		while (left(node) != NIL)
+			node = left(node);
+		return node;
+	}
+
+	//sucessor em ordem
+	private int successor(int x) {
+		if (right(x) != NIL)
+			return minimum(right(x));
+		int y = parent(x);
+		while (y != NIL && x == right(y)) {
+			x = y;
+			y = parent(y);
+		}
+		return y;
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	//slots alocados nos blocos, usados ou livres
+	public int capacity() {
+		return chunks << CHUNK_BITS;
+	}
+
+	//retorna a k-esima menor chave (comecando em 0)
+	public T select(int k) {
+		if (k < 0 || k >= size())
+			throw new IndexOutOfBoundsException("Indice: " + k + ", Tamanho: " + size());
+		int x = root;
+		while (true) {
+			int leftSize = size(left(x));
+			if (k < leftSize) {
+				x = left(x);
+			} else if (k == leftSize) {
+				return key(x);
+			} else {
+				k -= leftSize + 1;
+				x = right(x);
+			}
+		}
+	}
+
+	//retorna quantas chaves da arvore sao menores que key
+	public int rank(T key) {
+		return countLess(key, false);
+	}
+
+	//retorna quantas chaves estao entre lo e hi, incluindo os extremos
+	public int countInRange(T lo, T hi) {
+		if (lo.compareTo(hi) > 0)
+			return 0;
+		return countLess(hi, true) - countLess(lo, false);
+	}
+
+	private int countLess(T key, boolean inclusive) {
+		int count = 0;
+		int x = root;
+		while (x != NIL) {
+			int cmp = key.compareTo(key(x));
+			if (cmp < 0 || (cmp == 0 && !inclusive)) {
+				x = left(x);
+			} else {
+				count += size(left(x)) + 1;
+				x = right(x);
+			}
+		}
+		return count;
+	}
+
+	//valida a arvore: ordem, cores, altura negra, ponteiros de pai e tamanhos das subarvores
+	public boolean validate() {
+		if (color(root) != BLACK || parent(root) != NIL || size(NIL) != 0 || color(NIL) != BLACK)
+			return false;
+		return validate(root, null, null) >= 0;
+	}
+
+	//retorna a altura negra da subarvore ou -1 se alguma propriedade foi violada
+	private int validate(int node, T min, T max) {
+		if (node == NIL)
+			return 0;
+		T key = key(node);
+		if (min != null && key.compareTo(min) < 0) return -1;
+		if (max != null && key.compareTo(max) > 0) return -1;
+		if (left(node) != NIL && parent(left(node)) != node) return -1;
+		if (right(node) != NIL && parent(right(node)) != node) return -1;
+		if (color(node) == RED && (color(left(node)) == RED || color(right(node)) == RED)) return -1;
+		if (size(node) != size(left(node)) + size(right(node)) + 1) return -1;
+		int leftHeight = validate(left(node), min, key);
+		int rightHeight = validate(right(node), key, max);
+		if (leftHeight < 0 || rightHeight < 0 || leftHeight != rightHeight)
+			return -1;
+		return leftHeight + (color(node) == BLACK ? 1 : 0);
+	}
+
+	//percursos sem recursao: o iterador so guarda o indice do proximo no
+	public Iterator<T> iterator(TraversalOrder order) {
+		return new TraversalIterator(order);
+	}
+
+	//o mesmo percurso para usar em um for
+	public Iterable<T> traverse(final TraversalOrder order) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return ArrayRedBlackTree.this.iterator(order);
+			}
+		};
+	}
+
+	public Stream<T> stream(TraversalOrder order) {
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+		if (order == TraversalOrder.IN)
+			characteristics |= Spliterator.SORTED;
+		return StreamSupport.stream(Spliterators.spliterator(iterator(order), size(), characteristics), false);
+	}
+
+	//mesmo contrato do toArrayList do RedBlackTree: PRE, IN ou POS, e null para a arvore vazia
+	public ArrayList<T> toArrayList(String type) {
+		if (root == NIL) return null;
+		ArrayList<T> ret = new ArrayList<T>(size());
+		for (T key : traverse(TraversalOrder.parse(type)))
+			ret.add(key);
+		return ret;
+	}
+
+	//iterador de percurso que anda pelos indices de pai e filhos
+	private class TraversalIterator implements Iterator<T> {
+		private final TraversalOrder order;
+		private int next;
+
+		TraversalIterator(TraversalOrder order) {
+			this.order = order;
+			if (root == NIL)
+				next = NIL;
+			else if (order == TraversalOrder.PRE)
+				next = root;
+			else if (order == TraversalOrder.IN)
+				next = minimum(root);
+			else
+				next = firstLeaf(root);
+		}
+
+		//primeiro no da pos-ordem de uma subarvore
+		private int firstLeaf(int node) {
+			while (true) {
+				if (left(node) != NIL)
+					node = left(node);
+				else if (right(node) != NIL)
+					node = right(node);
+				else
+					return node;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != NIL;
+		}
+
+		@Override
+		public T next() {
+			if (next == NIL)
+				throw new NoSuchElementException();
+			int node = next;
+			if (order == TraversalOrder.IN)
+				next = successor(node);
+			else if (order == TraversalOrder.PRE)
+				next = preOrderNext(node);
+			else
+				next = posOrderNext(node);
+			return key(node);
+		}
+
+		//proximo na pre-ordem: um filho, ou o filho direito do primeiro ancestral que ainda tem a direita pendente
+		private int preOrderNext(int x) {
+			if (left(x) != NIL)
+				return left(x);
+			if (right(x) != NIL)
+				return right(x);
+			int y = parent(x);
+			while (y != NIL) {
+				if (x == left(y) && right(y) != NIL)
+					return right(y);
+				x = y;
+				y = parent(y);
+			}
+			return NIL;
+		}
+
+		//proximo na pos-ordem: o pai, a nao ser que o no seja filho esquerdo e o pai tenha subarvore direita
+		private int posOrderNext(int x) {
+			int y = parent(x);
+			if (y != NIL && x == left(y) && right(y) != NIL)
+				return firstLeaf(right(y));
+			return y;
+		}
+	}
+}
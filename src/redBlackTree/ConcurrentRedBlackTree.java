@@ -0,0 +1,240 @@
+package redBlackTree;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.StampedLock;
+
+import common.PoolStats;
+
+//fachada thread-safe do RedBlackTree usando StampedLock. As alteracoes usam o lock de escrita. As leituras
+//(contains, size e as estatisticas de ordem) primeiro tentam uma leitura otimista, que nao bloqueia nem
+//escreve em memoria compartilhada, e so pegam o lock de leitura se uma escrita aconteceu no meio.
+//Uma leitura otimista pode ver a arvore no meio de uma rotacao: por isso a descida tem um limite de passos
+//e qualquer excecao causada por ponteiros inconsistentes e descartada se o stamp nao validar.
+//Com o lock de leitura as leituras usam as mesmas descidas: os metodos do RedBlackTree contam comparacoes nos
+//TreeCounters, que nao sao thread-safe, entao nao podem rodar em varios leitores ao mesmo tempo
+public class ConcurrentRedBlackTree<T extends Comparable<T>> {
+
+	//a altura de uma rubro-negra e no maximo 2*log2(n+1), menor que isso para qualquer n int; uma descida
+	//mais longa so acontece lendo ponteiros durante uma escrita
+	private static final int MAX_DESCENT = 2 * Integer.SIZE;
+
+	private final RedBlackTree<T> tree;
+	private final StampedLock lock = new StampedLock();
+
+	public ConcurrentRedBlackTree() {
+		this(false, 0);
+	}
+
+	//mesmas opcoes do RedBlackTree: modo multiconjunto e tamanho do pool de nos
+	public ConcurrentRedBlackTree(boolean multiset, int poolCapacity) {
+		this.tree = new RedBlackTree<T>(multiset, poolCapacity);
+	}
+
+	public void insert(T key) {
+		long stamp = lock.writeLock();
+		try {
+			tree.insert(key);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public boolean remove(T key) {
+		long stamp = lock.writeLock();
+		try {
+			return tree.remove(key);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public boolean contains(T key) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int found = find(key);
+				if (lock.validate(stamp) && found >= 0)
+					return found == 1;
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp))
+					throw e;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return find(key) == 1;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int size = tree.size();
+				if (lock.validate(stamp))
+					return size;
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp))
+					throw e;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return tree.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//k-esima menor chave (comecando em 0)
+	public T select(int k) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				RedBlackNode<T> node = selectNode(k);
+				T key = node == null ? null : node.key;
+				if (lock.validate(stamp) && key != null)
+					return key;
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp))
+					throw e;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			RedBlackNode<T> node = selectNode(k);
+			if (node == null)
+				throw new IndexOutOfBoundsException("Indice: " + k + ", Tamanho: " + tree.size());
+			return node.key;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//quantas chaves sao menores que key
+	public int rank(T key) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int rank = countLess(key, false);
+				if (lock.validate(stamp) && rank >= 0)
+					return rank;
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp))
+					throw e;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return countLess(key, false);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//quantas chaves estao entre lo e hi, incluindo os extremos
+	public int countInRange(T lo, T hi) {
+		if (lo.compareTo(hi) > 0)
+			return 0;
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int high = countLess(hi, true);
+				int low = countLess(lo, false);
+				if (lock.validate(stamp) && high >= 0 && low >= 0)
+					return high - low;
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp))
+					throw e;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return countLess(hi, true) - countLess(lo, false);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//copia as chaves com o lock de leitura; mesmo contrato do toArrayList do RedBlackTree
+	public ArrayList<T> toArrayList(String type) {
+		long stamp = lock.readLock();
+		try {
+			return tree.toArrayList(type);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public boolean validate() {
+		long stamp = lock.readLock();
+		try {
+			return tree.validate();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//copia dos contadores do pool, ja que os do RedBlackTree mudam a cada escrita
+	public PoolStats poolStats() {
+		long stamp = lock.readLock();
+		try {
+			return new PoolStats(tree.poolStats());
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	//descidas para as leituras: as mesmas do RedBlackTree, mas sem contadores e com limite de passos.
+	//Retornam -1 (ou null) quando passam do limite, o que so acontece se a arvore mudou no meio
+
+	//1 se achou, 0 se nao achou
+	private int find(T key) {
+		RedBlackNode<T> current = tree.getRoot();
+		for (int steps = 0; steps < MAX_DESCENT; steps++) {
+			if (tree.isNil(current))
+				return 0;
+			int cmp = key.compareTo(current.key);
+			if (cmp == 0)
+				return 1;
+			current = cmp < 0 ? current.left : current.right;
+		}
+		return -1;
+	}
+
+	private RedBlackNode<T> selectNode(int k) {
+		RedBlackNode<T> current = tree.getRoot();
+		if (k < 0 || k >= current.numLeft + current.numRight + current.count || tree.isNil(current))
+			return null;
+		for (int steps = 0; steps < MAX_DESCENT && !tree.isNil(current); steps++) {
+			if (k < current.numLeft)
+				current = current.left;
+			else if (k < current.numLeft + current.count)
+				return current;
+			else {
+				k -= current.numLeft + current.count;
+				current = current.right;
+			}
+		}
+		return null;
+	}
+
+	private int countLess(T key, boolean inclusive) {
+		int count = 0;
+		RedBlackNode<T> current = tree.getRoot();
+		for (int steps = 0; steps < MAX_DESCENT; steps++) {
+			if (tree.isNil(current))
+				return count;
+			int cmp = key.compareTo(current.key);
+			if (cmp < 0 || (cmp == 0 && !inclusive))
+				current = current.left;
+			else {
+				count += current.numLeft + current.count;
+				current = current.right;
+			}
+		}
+		return -1;
+	}
+}
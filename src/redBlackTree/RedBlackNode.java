@@ -22,6 +22,8 @@ class RedBlackNode<T extends Comparable<T>> {
     public int numRight = 0;
     // cor de cada n
     public int color;
+    // quantas vezes a chave foi inserida; passa de 1 s no modo multiconjunto
+    public int count = 1;
 
     RedBlackNode(){
         color = BLACK;
@@ -2,15 +2,58 @@
 package redBlackTree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import common.PoolStats;
+import common.TraversalOrder;
+import common.TreeCounters;
+import common.TreeOperationEvent;
 
 public class RedBlackTree<T extends Comparable<T>> {
 
 	//definio de um n nulo onde todas as folhas o possuem como filho.
 	private RedBlackNode<T> nil = new RedBlackNode<T>();
 	private RedBlackNode<T> root = nil;
+	//no modo multiconjunto, chaves iguais ficam no mesmo n e o n conta quantas vezes a chave foi inserida
+	private final boolean multiset;
+	//pool de ns removidos, encadeados pelo pai, que so reaproveitados nas prximas inseres
+	private RedBlackNode<T> pool = null;
+	private final PoolStats poolStats;
+	//rotaes, iteraes dos fixups e comparaes, contadas s com TreeCounters.ENABLED
+	private final TreeCounters counters = new TreeCounters();
+	//rotaes e iteraes dos fixups feitas at agora e ns visitados pela ltima insero ou remoo,
+	//para o TreeOperationEvent
+	private int restructurings = 0;
+	private int depth = 0;
+	//pilha com o caminho da raiz at o n removido por remove(T), reaproveitada entre as operaes
+	private RedBlackNode<T>[] path = newPath(32);
+	private int pathSize = 0;
 
     public RedBlackTree() {
+        this(false);
+    }
+
+	//multiset = true guarda cada chave distinta uma s vez com sua contagem: a memria e a altura crescem
+	//com o nmero de chaves distintas, mas size, rank, select e os percursos contam as repeties
+	public RedBlackTree(boolean multiset) {
+        this(multiset, 0);
+    }
+
+	//poolCapacity  quantos ns removidos a rvore guarda para reaproveitar; com 0 no h pool.
+	//Em uso contnuo de inseres e remoes, um pool do tamanho da variao da rvore faz as inseres
+	//no alocarem nada. Um n devolvido por search no deve ser usado depois de removido
+	public RedBlackTree(boolean multiset, int poolCapacity) {
+        this.multiset = multiset;
+        this.poolStats = new PoolStats(poolCapacity);
         root.left = nil;
         root.right = nil;
         root.parent = nil;
@@ -18,6 +61,8 @@ public class RedBlackTree<T extends Comparable<T>> {
 
 	//rotao  esquerda em x
 	private void leftRotate(RedBlackNode<T> x){
+		if (TreeCounters.ENABLED) counters.rotation();
+		restructurings++;
 		//atualiza os valores de numLeft e numRight
 		leftRotateFixup(x);
 
@@ -49,46 +94,19 @@ public class RedBlackTree<T extends Comparable<T>> {
 
 
 	// x - n em que a rotao  esqueda est sendo feita 
-	//atualiza numleft e numRight que so alterados na rotao
+	//atualiza numleft e numRight que so alterados na rotao: x fica com a antiga subrvore esquerda de
+	//x.right  direita e x.right passa a ter x inteiro  esquerda
 	private void leftRotateFixup(RedBlackNode<T> x){
-
-
-		if (isNil(x.left) && isNil(x.right.left)){
-			x.numLeft = 0;
-			x.numRight = 0;
-			x.right.numLeft = 1;
-		}
-
-
-		else if (isNil(x.left) && !isNil(x.right.left)){
-			x.numLeft = 0;
-			x.numRight = 1 + x.right.left.numLeft +
-					x.right.left.numRight;
-			x.right.numLeft = 2 + x.right.left.numLeft +
-					  x.right.left.numRight;
-		}
-
-
-		else if (!isNil(x.left) && isNil(x.right.left)){
-			x.numRight = 0;
-			x.right.numLeft = 2 + x.left.numLeft + x.left.numRight;
-
-		}
-
-		else{
-			x.numRight = 1 + x.right.left.numLeft +
-				     x.right.left.numRight;
-			x.right.numLeft = 3 + x.left.numLeft + x.left.numRight +
-			x.right.left.numLeft + x.right.left.numRight;
-		}
-
+		x.numRight = subtreeSize(x.right.left);
+		x.right.numLeft = x.numLeft + x.numRight + x.count;
 	}
 
 
 	//rotao  direita em x - simtrica  rotao  esquerda.
 	private void rightRotate(RedBlackNode<T> y){
 
-		
+		if (TreeCounters.ENABLED) counters.rotation();
+		restructurings++;
 		rightRotateFixup(y);
         
         RedBlackNode<T> x = y.left;
@@ -115,43 +133,135 @@ public class RedBlackTree<T extends Comparable<T>> {
 	// y - n em que a rotao  direita est sendo feita 
 	//atualiza numleft e numRight que so alterados na rotao - simetrico ao leftRotateFixUp
 	private void rightRotateFixup(RedBlackNode<T> y){
+		y.numLeft = subtreeSize(y.left.right);
+		y.left.numRight = y.numLeft + y.numRight + y.count;
+	}
 
-		
-		if (isNil(y.right) && isNil(y.left.right)){
-			y.numRight = 0;
-			y.numLeft = 0;
-			y.left.numRight = 1;
-		}
-
-		else if (isNil(y.right) && !isNil(y.left.right)){
-			y.numRight = 0;
-			y.numLeft = 1 + y.left.right.numRight +
-				  y.left.right.numLeft;
-			y.left.numRight = 2 + y.left.right.numRight +
-				  y.left.right.numLeft;
-		}
-
-		else if (!isNil(y.right) && isNil(y.left.right)){
-			y.numLeft = 0;
-			y.left.numRight = 2 + y.right.numRight +y.right.numLeft;
+	//cria uma rvore j balanceada a partir de chaves em ordem crescente, em tempo linear e sem rotaes
+	public static <T extends Comparable<T>> RedBlackTree<T> bulkLoad(Iterator<T> sorted){
+		ArrayList<T> keys = new ArrayList<T>();
+		while (sorted.hasNext())
+			keys.add(sorted.next());
+		return bulkLoad(keys.iterator(), keys.size());
+	}
 
-		}
+	//mesma coisa, mas sabendo quantas chaves viro: as chaves so consumidas em ordem enquanto a rvore 
+	//montada, sem nenhuma cpia intermediria
+	public static <T extends Comparable<T>> RedBlackTree<T> bulkLoad(final Iterator<T> sorted, int size){
+		RedBlackTree<T> tree = new RedBlackTree<T>();
+		if (size > 0){
+			//a rvore montada pelo meio tem todas as folhas em dois nveis vizinhos: os ns do nvel mais
+			//profundo (se ele no estiver completo) ficam vermelhos e todos os outros pretos
+			int redLevel = 0;
+			for (int m = size - 1; m >= 0; m = m / 2 - 1)
+				redLevel++;
+			Iterator<T> checked = new Iterator<T>() {
+				private T last = null;
+
+				@Override
+				public boolean hasNext() {
+					return sorted.hasNext();
+				}
 
-		else{
-			y.numLeft = 1 + y.left.right.numRight +
-				  y.left.right.numLeft;
-			y.left.numRight = 3 + y.right.numRight +
-				  y.right.numLeft +
-			y.left.right.numRight + y.left.right.numLeft;
+				@Override
+				public T next() {
+					T key = sorted.next();
+					if (last != null && last.compareTo(key) > 0)
+						throw new IllegalArgumentException("As chaves no esto em ordem: " + key);
+					last = key;
+					return key;
+				}
+			};
+			tree.root = tree.build(checked, size, 0, redLevel);
+			tree.root.parent = tree.nil;
 		}
+		return tree;
+	}
 
+	//monta a subrvore com as prximas size chaves e a chave do meio como raiz, j com numLeft e numRight
+	private RedBlackNode<T> build(Iterator<T> sorted, int size, int level, int redLevel){
+		if (size == 0)
+			return nil;
+		int leftSize = (size - 1) / 2;
+		RedBlackNode<T> left = build(sorted, leftSize, level + 1, redLevel);
+		RedBlackNode<T> node = new RedBlackNode<T>(sorted.next());
+		node.color = level == redLevel ? RedBlackNode.RED : RedBlackNode.BLACK;
+		node.numLeft = leftSize;
+		node.numRight = size - 1 - leftSize;
+		node.left = left;
+		node.right = build(sorted, node.numRight, level + 1, redLevel);
+		if (!isNil(node.left))
+			node.left.parent = node;
+		if (!isNil(node.right))
+			node.right.parent = node;
+		return node;
 	}
 
 	//mtodo pblico para insero
     public void insert(T key) {
-        insert(new RedBlackNode<T>(key));
+        TreeOperationEvent event = TreeOperationEvent.start();
+        int restructurings = this.restructurings;
+        if (TreeCounters.ENABLED) counters.operation();
+        if (!multiset || !increment(key))
+            insert(newNode(key));
+        event.finish("RB", "insert", key, depth, this.restructurings - restructurings, size());
     }
 
+	//pega um n do pool ou cria um novo
+	private RedBlackNode<T> newNode(T key){
+		RedBlackNode<T> node = pool;
+		poolStats.recordRequest(node != null);
+		if (node == null)
+			return new RedBlackNode<T>(key);
+		pool = node.parent;
+		node.key = key;
+		node.numLeft = 0;
+		node.numRight = 0;
+		node.count = 1;
+		return node;
+	}
+
+	//guarda no pool um n que saiu da rvore, se ainda houver espao
+	private void release(RedBlackNode<T> node){
+		node.key = null;
+		node.left = null;
+		node.right = null;
+		if (poolStats.recordRelease()){
+			node.parent = pool;
+			pool = node;
+		}
+		else
+			node.parent = null;
+	}
+
+	//contadores do pool de ns
+	public PoolStats poolStats(){
+		return poolStats;
+	}
+
+	//contadores de rotaes, fixups e comparaes
+	public TreeCounters counters(){
+		return counters;
+	}
+
+	//no modo multiconjunto, se a chave j existe s aumenta a contagem do n e os contadores do caminho
+	private boolean increment(T key){
+		RedBlackNode<T> x = root;
+		depth = 0;
+		while (!isNil(x)){
+			depth++;
+			if (TreeCounters.ENABLED) counters.comparison();
+			int cmp = key.compareTo(x.key);
+			if (cmp == 0){
+				x.count++;
+				addToAncestors(x, 1);
+				return true;
+			}
+			x = cmp < 0 ? x.left : x.right;
+		}
+		return false;
+	}
+
     //insere o n z na rvore, atualizando numLeft e numRight
 	private void insert(RedBlackNode<T> z) {
 
@@ -160,9 +270,12 @@ public class RedBlackTree<T extends Comparable<T>> {
 			RedBlackNode<T> x = root;
 
 			//encontrar onde o n z deve ser inserido
+			depth = 1;
 			while (!isNil(x)){
 				y = x;
+				depth++;
 
+				if (TreeCounters.ENABLED) counters.comparison();
 				if (z.key.compareTo(x.key) < 0){
 					x.numLeft++;
 					x = x.left;
@@ -175,6 +288,7 @@ public class RedBlackTree<T extends Comparable<T>> {
 			}
 			// y ser o pai de z
 			z.parent = y;
+			if (TreeCounters.ENABLED && !isNil(y)) counters.comparison();
 
 			//dependendo do valor de y, z ser um filho  esquerda ou  direita
 			if (isNil(y))
@@ -201,6 +315,8 @@ public class RedBlackTree<T extends Comparable<T>> {
 		RedBlackNode<T> y = nil;
 		//enquanto o pai de z for vermelho..
 		while (z.parent.color == RedBlackNode.RED){
+			if (TreeCounters.ENABLED) counters.fixup();
+			restructurings++;
 
 			//se o pai de z  um filho  esquerda
 			if (z.parent == z.parent.parent.left){
@@ -271,8 +387,8 @@ public class RedBlackTree<T extends Comparable<T>> {
 	//retorna o sucesor de x
 	public RedBlackNode<T> treeSuccessor(RedBlackNode<T> x){
 
-		//se x tem filho a esquerda, retorna o menor valor da arvore direita de x
-		if (!isNil(x.left) )
+		//se x tem filho a direita, retorna o menor valor da arvore direita de x
+		if (!isNil(x.right))
 			return treeMinimum(x.right);
 
 		RedBlackNode<T> y = x.parent;
@@ -285,21 +401,102 @@ public class RedBlackTree<T extends Comparable<T>> {
 		return y;
 	}
 
-	//z ser o n a ser removido da rvore
+	//remove uma chave da rvore descendo uma nica vez; retorna false se a chave no existe.
+	//No modo multiconjunto remove uma ocorrncia: o n s sai da rvore quando a contagem chega a zero
+	public boolean remove(T key){
+		TreeOperationEvent event = TreeOperationEvent.start();
+		int restructurings = this.restructurings;
+		boolean removed = removeKey(key);
+		event.finish("RB", "remove", key, depth, this.restructurings - restructurings, size());
+		return removed;
+	}
+
+	//desce uma vez s guardando o caminho na pilha; numLeft e numRight s mudam se a chave for encontrada,
+	//pelos ns da pilha, sem outra descida nem subida pelos pais. Uma chave ausente no altera nada
+	private boolean removeKey(T key){
+		if (TreeCounters.ENABLED) counters.operation();
+		RedBlackNode<T> z = root;
+		depth = 0;
+		while (!isNil(z)){
+			depth++;
+			if (TreeCounters.ENABLED) counters.comparison();
+			int cmp = key.compareTo(z.key);
+			if (cmp == 0)
+				break;
+			push(z);
+			z = cmp < 0 ? z.left : z.right;
+		}
+		if (isNil(z)){
+			clearPath();
+			return false;
+		}
+		//os ancestrais de z perdem uma ocorrncia do lado por onde a descida seguiu
+		for (int i = 0; i < pathSize; i++){
+			RedBlackNode<T> child = i + 1 < pathSize ? path[i + 1] : z;
+			if (path[i].left == child)
+				path[i].numLeft--;
+			else
+				path[i].numRight--;
+		}
+		clearPath();
+		//no modo multiconjunto com mais de uma ocorrncia o n fica
+		if (z.count > 1){
+			z.count--;
+			return true;
+		}
+		// se um dos filhos de z for null, podemos remover z
+		if (isNil(z.left) || isNil(z.right)){
+			removeNode(z, z);
+			return true;
+		}
+		//seno, a descida continua at o sucessor (o menor de z.right), que sai da rvore e leva a sua chave e
+		//contagem para z: o lado direito de z e a esquerda dos ns at ele perdem as ocorrncias do sucessor
+		RedBlackNode<T> y = z.right;
+		while (!isNil(y.left)){
+			push(y);
+			y = y.left;
+		}
+		z.numRight -= y.count;
+		for (int i = 0; i < pathSize; i++)
+			path[i].numLeft -= y.count;
+		clearPath();
+		removeNode(z, y);
+		return true;
+	}
+
+	private void push(RedBlackNode<T> node){
+		if (pathSize == path.length)
+			path = Arrays.copyOf(path, pathSize * 2);
+		path[pathSize++] = node;
+	}
+
+	//esvazia a pilha sem deixar referncias para ns que podem sair da rvore
+	private void clearPath(){
+		Arrays.fill(path, 0, pathSize, null);
+		pathSize = 0;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})//suprime warnings por causa de cast para tipo generico
+	private static <T extends Comparable<T>> RedBlackNode<T>[] newPath(int length){
+		return new RedBlackNode[length];
+	}
+
+	//remove o n v, que deve ter vindo de search nesta rvore, com todas as suas ocorrncias
 	public void remove(RedBlackNode<T> v){
-		//verificar se z est na rvore
-		RedBlackNode<T> z = search(v.key);
+		// se um dos filhos de v for null, podemos remover v; seno, removemos o sucessor
+		RedBlackNode<T> y = isNil(v.left) || isNil(v.right) ? v : treeSuccessor(v);
 
-		// Variveis
-		RedBlackNode<T> x = nil;
-		RedBlackNode<T> y = nil;
+		//atualizar numLeft e numRight dos ancestrais de y, que perdem um n do lado por onde se chega em y
+		fixNodeData(y, v);
+		removeNode(v, y);
+	}
 
-		// se um dos filhos de z for null, podemos remover z
-		if (isNil(z.left) || isNil(z.right))
-			y = z;
+	//z ser o n cuja chave sai da rvore e y o n retirado dela (o prprio z ou o seu sucessor), com numLeft e
+	//numRight j atualizados
+	private void removeNode(RedBlackNode<T> z, RedBlackNode<T> y){
 
-		//seno, removemos o sucessor
-		else y = treeSuccessor(z);
+		// Variveis
+		RedBlackNode<T> x = nil;
 
 		//x ser o filho de y(esquerdo, direito, ou null)
 		if (!isNil(y.left))
@@ -315,83 +512,58 @@ public class RedBlackTree<T extends Comparable<T>> {
 			root = x;
 
 		//se y  um filho  esquerda, y ser filho  esquerda
-		else if (!isNil(y.parent.left) && y.parent.left == y)
+		else if (y.parent.left == y)
 			y.parent.left = x;
 
 		//se y  um filho  direita, y ser filho  direita
-		else if (!isNil(y.parent.right) && y.parent.right == y)
+		else
 			y.parent.right = x;
 
 		// se y for diferente de z, z receber os dados de y
 		if (y != z){
 			z.key = y.key;
+			z.count = y.count;
 		}
-		
-		//atualizar numLeft e numRight que podem ter mudado
-		//atualizar devido a remoo de z.key
-		fixNodeData(x,y);
 
 		//se um n preto foi removido, devemos consertar a rvore
 		if (y.color == RedBlackNode.BLACK)
 			removeFixup(x);
-	}
-
-
-	//y - o n que foi removido
-	//key - o valor que estava em y
-	private void fixNodeData(RedBlackNode<T> x, RedBlackNode<T> y){
-
-		// Variveis
-		RedBlackNode<T> current = nil;
-		RedBlackNode<T> track = nil;
-
 
-		//se x for nulo, atualizamos no pai de y
-		if (isNil(x)){
-			current = y.parent;
-			track = y;
-		}
+		release(y);
+	}
 
-		// seno, atualizamos no pai de x
-		else{
-			current = x.parent;
-			track = x;
-		}
 
-		//enquanto no achamos a raiz
+	//y - o n que ser retirado da rvore
+	//z - o n cuja chave est sendo removida (o prprio y ou um ancestral que recebe a chave de y)
+	//sobe pelos pais de y usando o lado de cada ligao, sem comparar chaves, ento funciona com chaves repetidas.
+	//At z some o peso de y; acima de z, o peso de z
+	private void fixNodeData(RedBlackNode<T> y, RedBlackNode<T> z){
+		int amount = y.count;
+		RedBlackNode<T> track = y;
+		RedBlackNode<T> current = y.parent;
 		while (!isNil(current)){
-			//se o n deletado tem uma chave diferente do n atual
-			if (y.key != current.key) {
-
-				//verificamos se ele estaria  direita ou  esquerda e fazemos o ajuste
-				if (y.key.compareTo(current.key) > 0)
-					current.numRight--;
-
-				if (y.key.compareTo(current.key) < 0)
-					current.numLeft--;
-			}
-
-			//se o n que deletamos  igual ao autal
-			else{
-				//se o n atual tiver algum filho null, ajustamos
-				if (isNil(current.left))
-					current.numLeft--;
-				else if (isNil(current.right))
-					current.numRight--;
-
-				// se ele tiver dois filhos, verificamos se track  o filho  esquerda ou  direita e atualizamos
-				else if (track == current.right)
-					current.numRight--;
-				else if (track == current.left)
-					current.numLeft--;
-			}
-
-			//atualizar track e current
+			if (current.left == track)
+				current.numLeft -= amount;
+			else
+				current.numRight -= amount;
+			if (current == z)
+				amount = z.count;
 			track = current;
 			current = current.parent;
-
 		}
+	}
 
+	//soma delta nos contadores de todos os ancestrais de node, pelo lado por onde se chega em node
+	private void addToAncestors(RedBlackNode<T> node, int delta){
+		RedBlackNode<T> current = node.parent;
+		while (!isNil(current)){
+			if (current.left == node)
+				current.numLeft += delta;
+			else
+				current.numRight += delta;
+			node = current;
+			current = current.parent;
+		}
 	}
 
 
@@ -403,6 +575,8 @@ public class RedBlackTree<T extends Comparable<T>> {
 
 		//enquanto no terminamos de consertar a rvore
 		while (x != root && x.color == RedBlackNode.BLACK){
+			if (TreeCounters.ENABLED) counters.fixup();
+			restructurings++;
 
 			//se x  filho  esquerda
 			if (x == x.parent.left){
@@ -482,60 +656,376 @@ public class RedBlackTree<T extends Comparable<T>> {
 	//pesquisa uma chave na rvore
 	public RedBlackNode<T> search(T key){
 
+		TreeOperationEvent event = TreeOperationEvent.start();
+		if (TreeCounters.ENABLED) counters.operation();
 		RedBlackNode<T> current = root;
+		int depth = 0;
 		//enquanto no chegamos no fim da rvore
 		while (!isNil(current)){
 
+			depth++;
+			if (TreeCounters.ENABLED) counters.comparison();
 			if (current.key.equals(key))
-				return current;
-			else if (current.key.compareTo(key) < 0)
+				break;
+			if (TreeCounters.ENABLED) counters.comparison();
+			if (current.key.compareTo(key) < 0)
 				current = current.right;
 			else
 				current = current.left;
 		}
+		event.finish("RB", "search", key, depth, 0, size());
 
 		//se no achamos..
-		return null;
+		return isNil(current) ? null : current;
 
 
 	}
 	
+	//raiz da rvore, para as leituras otimistas do ConcurrentRedBlackTree
+	RedBlackNode<T> getRoot(){
+		return root;
+	}
+
 	//verifica se node  nil
-	private boolean isNil(RedBlackNode<T> node){
+	boolean isNil(RedBlackNode<T> node){
 		return node == nil;
 	}
 	
 	//retorna o tamanho da rvore
 	public int size(){
-		return root.numLeft + root.numRight + 1;
+		if (isNil(root)) return 0;
+		return subtreeSize(root);
 	}
-	
-	//mtodo de visitao utilizado para retornar os ns em uma determinada ordem: PRE, IN ou POS ORDER
-	private void visit(RedBlackNode<T> node, String type, ArrayList<T> list){
-		if(!isNil(node)){
-			if(type.equals("PRE")){
-				list.add(node.key);
-				visit(node.left, type, list);				
-				visit(node.right, type, list);				
-			}else if(type.equals("POS")){
-				visit(node.left, type, list);
-				visit(node.right, type, list);
-				list.add(node.key);
-			}else{
-				visit(node.left, type, list);
-				list.add(node.key);
-				visit(node.right, type, list);				
+
+	//altura da rvore em ns, percorrendo a rvore inteira
+	public int height(){
+		return height(root);
+	}
+
+	private int height(RedBlackNode<T> node){
+		if (isNil(node)) return 0;
+		return Math.max(height(node.left), height(node.right)) + 1;
+	}
+
+	//rotaes e iteraes dos fixups feitas desde a criao da rvore
+	public int restructurings(){
+		return restructurings;
+	}
+
+	//nmero de ns; s difere de size no modo multiconjunto, em que um n guarda as repeties da chave
+	public int nodeCount(){
+		return nodeCount(root);
+	}
+
+	private int nodeCount(RedBlackNode<T> node){
+		if (isNil(node)) return 0;
+		return nodeCount(node.left) + nodeCount(node.right) + 1;
+	}
+
+	//estatsticas de ordem: usam numLeft e numRight para descer apenas um caminho, em O(log n)
+
+	//retorna a k-sima menor chave (comeando em 0), a mesma que toArrayList("IN").get(k)
+	public T select(int k){
+		if (k < 0 || k >= size())
+			throw new IndexOutOfBoundsException("ndice: " + k + ", Tamanho: " + size());
+		return selectNode(k).key;
+	}
+
+	//retorna o n da k-sima menor chave; k deve ser vlido
+	private RedBlackNode<T> selectNode(int k){
+		RedBlackNode<T> current = root;
+		while (k < current.numLeft || k >= current.numLeft + current.count){
+			//a chave est  esquerda
+			if (k < current.numLeft)
+				current = current.left;
+			//a chave est  direita, descontamos a subrvore esquerda e as ocorrncias do prprio n
+			else{
+				k -= current.numLeft + current.count;
+				current = current.right;
+			}
+		}
+		return current;
+	}
+
+	//valida a rvore: ordem das chaves, raiz preta, nenhum vermelho com filho vermelho, mesma quantidade de
+	//pretos em todos os caminhos, ponteiros de pai e os contadores numLeft/numRight de cada n
+	public boolean validate(){
+		if (root.color != RedBlackNode.BLACK || !isNil(root.parent))
+			return false;
+		return validate(root, null, null) >= 0;
+	}
+
+	//retorna a altura negra da subrvore ou -1 se alguma propriedade foi violada
+	private int validate(RedBlackNode<T> node, T min, T max){
+		if (isNil(node))
+			return 0;
+		if (min != null && node.key.compareTo(min) < 0) return -1;
+		if (max != null && node.key.compareTo(max) > 0) return -1;
+		if (!isNil(node.left) && node.left.parent != node) return -1;
+		if (!isNil(node.right) && node.right.parent != node) return -1;
+		if (node.color == RedBlackNode.RED
+				&& (node.left.color == RedBlackNode.RED || node.right.color == RedBlackNode.RED))
+			return -1;
+		if (node.numLeft != subtreeSize(node.left) || node.numRight != subtreeSize(node.right))
+			return -1;
+		if (node.count < 1 || (node.count > 1 && !multiset))
+			return -1;
+		int left = validate(node.left, min, node.key);
+		int right = validate(node.right, node.key, max);
+		if (left < 0 || right < 0 || left != right)
+			return -1;
+		return left + (node.color == RedBlackNode.BLACK ? 1 : 0);
+	}
+
+	//nmero de chaves da subrvore (contando as repeties), a partir dos contadores guardados
+	private int subtreeSize(RedBlackNode<T> node){
+		return isNil(node) ? 0 : node.numLeft + node.numRight + node.count;
+	}
+
+	//retorna quantas chaves da rvore so menores que key, ou seja, a posio em que key est ou estaria
+	public int rank(T key){
+		return countLess(key, false);
+	}
+
+	//retorna quantas chaves esto entre lo e hi, incluindo os extremos
+	public int countInRange(T lo, T hi){
+		if (lo.compareTo(hi) > 0)
+			return 0;
+		return countLess(hi, true) - countLess(lo, false);
+	}
+
+	//conta as chaves menores que key (ou menores ou iguais, se inclusive for true)
+	private int countLess(T key, boolean inclusive){
+		int count = 0;
+		RedBlackNode<T> current = root;
+		while (!isNil(current)){
+			int cmp = key.compareTo(current.key);
+			if (cmp < 0 || (cmp == 0 && !inclusive))
+				current = current.left;
+			//o n atual e toda a sua subrvore esquerda entram na contagem
+			else{
+				count += current.numLeft + current.count;
+				current = current.right;
 			}
 		}
+		return count;
+	}
+	
+	//percursos sem recurso e sem copiar a rvore. Como os ns conhecem o pai, o iterador s guarda o
+	//prximo n: a memria extra  constante
+	public Iterator<T> iterator(TraversalOrder order){
+		return new TraversalIterator(order);
 	}
+
+	//o mesmo percurso para usar em um for
+	public Iterable<T> traverse(final TraversalOrder order){
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return RedBlackTree.this.iterator(order);
+			}
+		};
+	}
+
+	public Spliterator<T> spliterator(TraversalOrder order){
+		if (order == TraversalOrder.IN)
+			return spliterator();
+		return Spliterators.spliterator(iterator(order), size(), Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	public Stream<T> stream(TraversalOrder order){
+		return StreamSupport.stream(spliterator(order), false);
+	}
+
+	//percurso em ordem que sabe se dividir: cada pedao  um intervalo de posies e comea no n achado com
+	//numLeft/numRight em O(log n), ento os tamanhos so exatos (SIZED e SUBSIZED) e as divises balanceadas.
+	//Assim como na iterao, a rvore no pode ser alterada enquanto a stream roda
+	public Spliterator<T> spliterator(){
+		return new RangeSpliterator(0, size());
+	}
+
+	public Stream<T> stream(){
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	//stream que o fork-join pool divide entre as threads
+	public Stream<T> parallelStream(){
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	//mtodo visvel em que o usurio informa o tipo de ordenao que deseja: PRE, IN ou POS ORDER
 	public ArrayList<T> toArrayList(String type){
 		if(isNil(root)) return null;
 		
-		ArrayList<T> ret = new ArrayList<T>();
+		TreeOperationEvent event = TreeOperationEvent.start();
+		ArrayList<T> ret = new ArrayList<T>(size());
 		
-		visit(root, type, ret);
+		for (T key : traverse(TraversalOrder.parse(type)))
+			ret.add(key);
 		
+		//a altura custa mais um percurso, mas sem gravao do JFR o event  o desligado e height() nem roda
+		event.finish("RB", "traverse", null, event.isEnabled() ? height() : 0, 0, size());
 		return ret;
 	}
+
+	//spliterator das posies [from, to) do percurso em ordem
+	private class RangeSpliterator implements Spliterator<T> {
+		private int from;
+		private final int to;
+		private RedBlackNode<T> current = null;//n da posio from, achado s quando o percurso comea
+		private int copies;//ocorrncias de current que ainda faltam, contando a da posio from
+
+		RangeSpliterator(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+
+		//acha o n da posio from; no multiconjunto o intervalo pode comear no meio das repeties de um n
+		private void seek(){
+			current = selectNode(from);
+			copies = current.count > 1 ? countLess(current.key, true) - from : 1;
+		}
+
+		private void advance(){
+			from++;
+			if (--copies == 0){
+				current = treeSuccessor(current);
+				copies = current.count;
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (from >= to)
+				return false;
+			if (current == null)
+				seek();
+			T key = current.key;
+			advance();
+			action.accept(key);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			if (from >= to)
+				return;
+			if (current == null)
+				seek();
+			while (from < to){
+				T key = current.key;
+				advance();
+				action.accept(key);
+			}
+		}
+
+		//a primeira metade das posies vai para o novo spliterator
+		@Override
+		public Spliterator<T> trySplit() {
+			int middle = (from + to) >>> 1;
+			if (middle <= from)
+				return null;
+			RangeSpliterator prefix = new RangeSpliterator(from, middle);
+			prefix.current = current;
+			prefix.copies = copies;
+			from = middle;
+			current = null;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED
+					| Spliterator.NONNULL;
+		}
+
+		//ordem natural das chaves
+		@Override
+		public Comparator<? super T> getComparator() {
+			return null;
+		}
+	}
+
+	//iterador de percurso que anda pelos ponteiros de pai e filhos
+	private class TraversalIterator implements Iterator<T> {
+		private final TraversalOrder order;
+		private RedBlackNode<T> next;
+		private int emitted = 0;//ocorrncias de next j devolvidas, no modo multiconjunto
+
+		TraversalIterator(TraversalOrder order){
+			this.order = order;
+			if (isNil(root))
+				next = nil;
+			else if (order == TraversalOrder.PRE)
+				next = root;
+			else if (order == TraversalOrder.IN)
+				next = treeMinimum(root);
+			else
+				next = firstLeaf(root);
+		}
+
+		//primeiro n da ps-ordem de uma subrvore: desce pela esquerda, ou pela direita se no houver esquerda
+		private RedBlackNode<T> firstLeaf(RedBlackNode<T> node){
+			while (true){
+				if (!isNil(node.left))
+					node = node.left;
+				else if (!isNil(node.right))
+					node = node.right;
+				else
+					return node;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !isNil(next);
+		}
+
+		@Override
+		public T next() {
+			if (isNil(next))
+				throw new NoSuchElementException();
+			RedBlackNode<T> node = next;
+			//as repeties de uma chave saem seguidas
+			if (++emitted < node.count)
+				return node.key;
+			emitted = 0;
+			if (order == TraversalOrder.IN)
+				next = treeSuccessor(node);
+			else if (order == TraversalOrder.PRE)
+				next = preOrderNext(node);
+			else
+				next = posOrderNext(node);
+			return node.key;
+		}
+
+		//prximo na pr-ordem: um filho, ou o filho direito do primeiro ancestral que ainda tem a direita pendente
+		private RedBlackNode<T> preOrderNext(RedBlackNode<T> x){
+			if (!isNil(x.left))
+				return x.left;
+			if (!isNil(x.right))
+				return x.right;
+			RedBlackNode<T> y = x.parent;
+			while (!isNil(y)){
+				if (x == y.left && !isNil(y.right))
+					return y.right;
+				x = y;
+				y = y.parent;
+			}
+			return nil;
+		}
+
+		//prximo na ps-ordem: o pai, a no ser que o n seja filho esquerdo e o pai tenha subrvore direita
+		private RedBlackNode<T> posOrderNext(RedBlackNode<T> x){
+			RedBlackNode<T> y = x.parent;
+			if (!isNil(y) && x == y.left && !isNil(y.right))
+				return firstLeaf(y.right);
+			return y;
+		}
+	}
 }